@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hawkular.metrics.client.model.DataPoint;
+import org.hawkular.metrics.client.model.Metric;
+import org.hawkular.metrics.client.model.Tags;
+
+/**
+ * Limits the number of distinct metric ids per client, and the number of distinct datapoint tags sets per metric.
+ * All checks are constant time.<br/>
+ * Overflowing metrics and datapoints are either dropped, or redirected to the shared "__overflow__" metric (resp.
+ * tagged "__overflow__"). Overflows are counted and reported as self-metrics.
+ * @author Joel Takvorian
+ */
+class CardinalityLimiter {
+
+    static final String OVERFLOW = "__overflow__";
+    static final String SELF_METRIC_METRICS_OVERFLOW = "hawkular.toolbox.overflow.metrics";
+    static final String SELF_METRIC_TAGS_OVERFLOW = "hawkular.toolbox.overflow.tags";
+    private static final Tags OVERFLOW_TAGS = Tags.singleton(OVERFLOW, "true");
+
+    private final int maxMetrics;
+    private final int maxTagSetsPerMetric;
+    private final boolean dropOverflow;
+    private final AtomicInteger nbMetrics = new AtomicInteger();
+    private final ConcurrentMap<Metric, TagSets> tagSetsPerMetric = new ConcurrentHashMap<>();
+    private final LongAdder metricsOverflow = new LongAdder();
+    private final LongAdder tagsOverflow = new LongAdder();
+
+    CardinalityLimiter(Optional<Integer> maxMetrics, Optional<Integer> maxTagSetsPerMetric, boolean dropOverflow) {
+        this.maxMetrics = maxMetrics.orElse(Integer.MAX_VALUE);
+        this.maxTagSetsPerMetric = maxTagSetsPerMetric.orElse(Integer.MAX_VALUE);
+        this.dropOverflow = dropOverflow;
+    }
+
+    boolean isLimiting() {
+        return maxMetrics != Integer.MAX_VALUE || maxTagSetsPerMetric != Integer.MAX_VALUE;
+    }
+
+    boolean isDropOverflow() {
+        return dropOverflow;
+    }
+
+    /**
+     * Try to reserve a slot for a new metric id
+     * @return false if the limit is reached
+     */
+    boolean acquireMetric() {
+        if (nbMetrics.incrementAndGet() > maxMetrics) {
+            nbMetrics.decrementAndGet();
+            metricsOverflow.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Release a slot, when the metric was not registered after all, or removed from registry
+     */
+    void releaseMetric(Metric metric) {
+        nbMetrics.decrementAndGet();
+        tagSetsPerMetric.remove(metric);
+    }
+
+    /**
+     * Check datapoint tags against the per-metric limit
+     * @return the datapoint to send, possibly with overflow tags instead of its own, or null if it must be dropped
+     */
+    <T> DataPoint<T> limitTags(Metric metric, DataPoint<T> dp) {
+        Tags dpTags = dp.getDpTags();
+        if (maxTagSetsPerMetric == Integer.MAX_VALUE || dpTags == null || dpTags.isEmpty()) {
+            return dp;
+        }
+        if (metric.isDetached()) {
+            // Not tracked anymore, see releaseMetric
+            return dp;
+        }
+        TagSets tagSets = tagSetsPerMetric.computeIfAbsent(metric, m -> new TagSets());
+        if (metric.isDetached()) {
+            tagSetsPerMetric.remove(metric);
+        }
+        if (tagSets.accept(dpTags, maxTagSetsPerMetric)) {
+            return dp;
+        }
+        tagsOverflow.increment();
+        return dropOverflow ? null : dp.withDpTags(OVERFLOW_TAGS);
+    }
+
+    long pollMetricsOverflow() {
+        return metricsOverflow.sumThenReset();
+    }
+
+    long pollTagsOverflow() {
+        return tagsOverflow.sumThenReset();
+    }
+
+    private static class TagSets {
+        private final Set<Tags> known = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger size = new AtomicInteger();
+
+        private boolean accept(Tags tags, int max) {
+            if (known.contains(tags)) {
+                return true;
+            }
+            if (size.incrementAndGet() > max) {
+                size.decrementAndGet();
+                return false;
+            }
+            // Copy, as callers may still modify their Tags
+            if (!known.add(Tags.from(tags))) {
+                size.decrementAndGet();
+            }
+            return true;
+        }
+    }
+}
@@ -16,19 +16,40 @@
  */
 package org.hawkular.metrics.client;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 
 import org.hawkular.metrics.client.config.HawkularClientInfo;
 import org.hawkular.metrics.client.model.AvailabilityMetric;
 import org.hawkular.metrics.client.model.Counter;
+import org.hawkular.metrics.client.model.DerivedMetric;
+import org.hawkular.metrics.client.model.DistinctCounter;
+import org.hawkular.metrics.client.model.Expression;
 import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.Histogram;
 import org.hawkular.metrics.client.model.Logger;
+import org.hawkular.metrics.client.model.Meter;
 import org.hawkular.metrics.client.model.Metric;
 import org.hawkular.metrics.client.model.MetricChangeListener;
+import org.hawkular.metrics.client.model.NoopMetrics;
+import org.hawkular.metrics.client.model.Reportable;
+import org.hawkular.metrics.client.model.Sampling;
 import org.hawkular.metrics.client.model.Tags;
+import org.hawkular.metrics.client.model.Timer;
+import org.hawkular.metrics.client.model.TopK;
 import org.hawkular.metrics.client.model.Watch;
 import org.hawkular.metrics.client.monitor.MonitoringSession;
 
@@ -38,106 +59,673 @@ import org.hawkular.metrics.client.monitor.MonitoringSession;
  */
 public class HawkularClient {
 
+    private static final String SELF_METRIC_SUPPRESSED = "hawkular.toolbox.deadband.suppressed";
+
     private final HawkularClientInfo info;
     private final MetricsNotifier metricsNotifier;
     private final MetricsTagger metricsTagger;
-    private final Map<String, Counter> counters = new HashMap<>();
-    private final Map<String, Gauge> gauges = new HashMap<>();
-    private final Map<String, Watch> watches = new HashMap<>();
-    private final Map<String, AvailabilityMetric> avails = new HashMap<>();
-    private final Map<String, Logger> loggers = new HashMap<>();
+    private final CardinalityLimiter cardinalityLimiter;
+    private final IntervalReporter intervalReporter;
+    private final Collection<LongConsumer> periodicTasks = new CopyOnWriteArrayList<>();
+    private final Queue<MetricsBatch> pendingBatches = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sendingPending = new AtomicBoolean();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, AvailabilityMetric> avails = new ConcurrentHashMap<>();
+    private final Map<String, Logger> loggers = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Meter> meters = new ConcurrentHashMap<>();
+    private final Map<String, DistinctCounter> distinctCounters = new ConcurrentHashMap<>();
+    private final Map<String, TopK> topKs = new ConcurrentHashMap<>();
+    private final Map<String, DerivedMetric> derivedMetrics = new ConcurrentHashMap<>();
+    // Reportable metrics publish through metrics resolved from this client
+    private final List<Map<String, ? extends Reportable>> reportables =
+            Arrays.asList(histograms, meters, distinctCounters, topKs, derivedMetrics);
+    private final AtomicBoolean reporting = new AtomicBoolean();
+    // Metrics owned by the client itself, never evicted
+    private final Set<Metric> ownMetrics = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     /**
      * Use {@link HawkularFactory} or {@link HawkularClientBuilder} for public construction
      */
     HawkularClient(HawkularClientInfo info) {
         this.info = info;
-        metricsNotifier = new MetricsNotifier(info);
+        cardinalityLimiter = new CardinalityLimiter(info.getMaxMetrics(), info.getMaxTagSetsPerMetric(), info.isDropOverflow());
+        metricsNotifier = new MetricsNotifier(info, cardinalityLimiter);
         metricsTagger = new MetricsTagger(info);
+        intervalReporter = IntervalReporter.shared(info.getReportInterval());
+        if (!info.isDisabled() && cardinalityLimiter.isLimiting()) {
+            schedule(this::reportOverflows);
+        }
+        if (!info.isDisabled() && !info.getGaugeDeadbands().isEmpty()) {
+            schedule(this::reportSuppressed);
+        }
+        if (!info.isDisabled() && !info.getAvailabilityPolicies().isEmpty()) {
+            schedule(this::checkAvailabilities);
+        }
+        if (!info.isDisabled() && (!info.getRollups().isEmpty() || !info.getTagAggregations().isEmpty())) {
+            schedule(this::flushAggregates);
+        }
+        if (!info.isDisabled() && info.getEvictionTtl().isPresent()) {
+            MetricsEvictor evictor = new MetricsEvictor(info.getEvictionTtl().get(), info.getReportInterval(),
+                    Arrays.asList(counters, gauges, watches, timers, avails, loggers, histograms, meters,
+                            distinctCounters, topKs),
+                    (key, metric) -> isAlias(key, metric) || !ownMetrics.contains(metric),
+                    (key, metric) -> {
+                        if (!isAlias(key, metric)) {
+                            onRemoved(metric);
+                        }
+                    });
+            schedule(evictor::tick);
+        }
+        info.getDerivedMetrics().forEach(this::derivedMetric);
+    }
+
+    private void schedule(LongConsumer task) {
+        periodicTasks.add(task);
+        intervalReporter.register(task);
+    }
+
+    /**
+     * Names that resolve to a shared metric (overflow, no-op) are cached under their own key; evicting them just
+     * forgets the name
+     */
+    private static boolean isAlias(String key, Metric metric) {
+        return !key.equals(metric.getName());
+    }
+
+    private void onRemoved(Metric metric) {
+        metric.detach();
+        if (!NoopMetrics.isNoop(metric)) {
+            cardinalityLimiter.releaseMetric(metric);
+        }
     }
 
     private <T extends Metric> T metric(String name,
                                         Tags tags,
                                         Map<String, T> pool,
-                                        BiFunction<String, MetricChangeListener, T> factory) {
+                                        BiFunction<String, MetricChangeListener, T> factory,
+                                        BiFunction<String, MetricChangeListener, T> noopFactory) {
+        return metric(name, fullname -> tags, pool, factory, noopFactory, true);
+    }
+
+    /**
+     * @param tags resolves the metric tags from the full name, only when the metric is created
+     * @param filtered whether the metric filter applies; it doesn't for the outputs of a metric that was accepted
+     */
+    private <T extends Metric> T metric(String name,
+                                        Function<String, Tags> tags,
+                                        Map<String, T> pool,
+                                        BiFunction<String, MetricChangeListener, T> factory,
+                                        BiFunction<String, MetricChangeListener, T> noopFactory,
+                                        boolean filtered) {
+        if (info.isDisabled()) {
+            return noopFactory.apply(name, NoopMetrics.LISTENER);
+        }
         String fullname = info.getPrefix().map(p -> p + name).orElse(name);
-        if (pool.containsKey(fullname)) {
-            return pool.get(fullname);
+        T metric = pool.get(fullname);
+        if (metric != null) {
+            return metric;
+        }
+        if (filtered && !info.getMetricFilter().accept(name, fullname)) {
+            metric = noopFactory.apply(fullname, NoopMetrics.LISTENER);
+            T existing = pool.putIfAbsent(fullname, metric);
+            return existing == null ? metric : existing;
+        }
+        if (!cardinalityLimiter.acquireMetric()) {
+            // Cached under the name, so that next lookups neither allocate nor count as another overflowing metric
+            metric = cardinalityLimiter.isDropOverflow()
+                    ? noopFactory.apply(fullname, NoopMetrics.LISTENER)
+                    : unlimitedMetric(CardinalityLimiter.OVERFLOW, pool, factory);
+            T existing = pool.putIfAbsent(fullname, metric);
+            return existing == null ? metric : existing;
+        }
+        metric = factory.apply(fullname, metricsNotifier);
+        T existing = pool.putIfAbsent(fullname, metric);
+        if (existing != null) {
+            cardinalityLimiter.releaseMetric(metric);
+            return existing;
+        }
+        metricsTagger.tagMetric(metric, tags.apply(fullname));
+        return metric;
+    }
+
+    /**
+     * Metrics that aggregate values and publish them at each report interval, through other metrics of this client.
+     * They hold a cardinality slot, as they can take much more memory than the metrics they publish.
+     * @param factory creates the metric from its name (without prefix) and tags
+     */
+    private <T extends Metric & Reportable> T reportableMetric(String name,
+                                                               Tags tags,
+                                                               Map<String, T> pool,
+                                                               BiFunction<String, Tags, T> factory,
+                                                               Function<String, T> noopFactory) {
+        if (info.isDisabled()) {
+            return noopFactory.apply(name);
+        }
+        String fullname = fullname(name);
+        T metric = pool.get(fullname);
+        if (metric != null) {
+            return metric;
+        }
+        if (!info.getMetricFilter().accept(name, fullname)) {
+            metric = noopFactory.apply(fullname);
+            T existing = pool.putIfAbsent(fullname, metric);
+            return existing == null ? metric : existing;
+        }
+        if (!cardinalityLimiter.acquireMetric()) {
+            // Cached under the name, so that next lookups neither allocate nor count as another overflowing metric
+            metric = cardinalityLimiter.isDropOverflow()
+                    ? noopFactory.apply(fullname)
+                    : unlimitedReportableMetric(pool, factory);
+            T existing = pool.putIfAbsent(fullname, metric);
+            return existing == null ? metric : existing;
         }
-        T metric = factory.apply(fullname, metricsNotifier);
-        pool.put(fullname, metric);
-        metricsTagger.tagMetric(metric, tags);
+        metric = factory.apply(name, tags);
+        T existing = pool.putIfAbsent(fullname, metric);
+        if (existing != null) {
+            cardinalityLimiter.releaseMetric(metric);
+            return existing;
+        }
+        scheduleReporting();
         return metric;
     }
 
+    /**
+     * Shared "__overflow__" reportable metric of a pool, that is not subject to limits
+     */
+    private <T extends Metric & Reportable> T unlimitedReportableMetric(Map<String, T> pool,
+                                                                        BiFunction<String, Tags, T> factory) {
+        String fullname = fullname(CardinalityLimiter.OVERFLOW);
+        T metric = pool.get(fullname);
+        if (metric != null) {
+            return metric;
+        }
+        metric = factory.apply(CardinalityLimiter.OVERFLOW, Tags.empty());
+        T existing = pool.putIfAbsent(fullname, metric);
+        if (existing != null) {
+            return existing;
+        }
+        ownMetrics.add(metric);
+        scheduleReporting();
+        return metric;
+    }
+
+    private void scheduleReporting() {
+        if (reporting.compareAndSet(false, true)) {
+            schedule(this::reportMetrics);
+        }
+    }
+
+    private String fullname(String name) {
+        return info.getPrefix().map(p -> p + name).orElse(name);
+    }
+
+    private void reportMetrics(long timestamp) {
+        for (Map<String, ? extends Reportable> pool : reportables) {
+            for (Reportable metric : pool.values()) {
+                metric.report(timestamp);
+            }
+        }
+    }
+
+    /**
+     * Metrics owned by the client itself (overflow, self-metrics), that are not subject to limits and filters
+     */
+    private <T extends Metric> T unlimitedMetric(String name,
+                                                 Map<String, T> pool,
+                                                 BiFunction<String, MetricChangeListener, T> factory) {
+        String fullname = info.getPrefix().map(p -> p + name).orElse(name);
+        T metric = pool.get(fullname);
+        if (metric != null) {
+            return metric;
+        }
+        metric = factory.apply(fullname, metricsNotifier);
+        T existing = pool.putIfAbsent(fullname, metric);
+        if (existing != null) {
+            return existing;
+        }
+        ownMetrics.add(metric);
+        metricsTagger.tagMetric(metric, Tags.empty());
+        return metric;
+    }
+
+    private void reportOverflows(long timestamp) {
+        long metricsOverflow = cardinalityLimiter.pollMetricsOverflow();
+        if (metricsOverflow > 0) {
+            unlimitedMetric(CardinalityLimiter.SELF_METRIC_METRICS_OVERFLOW, counters, Counter::new).inc(metricsOverflow);
+        }
+        long tagsOverflow = cardinalityLimiter.pollTagsOverflow();
+        if (tagsOverflow > 0) {
+            unlimitedMetric(CardinalityLimiter.SELF_METRIC_TAGS_OVERFLOW, counters, Counter::new).inc(tagsOverflow);
+        }
+    }
+
+    private void reportSuppressed(long timestamp) {
+        long suppressed = metricsNotifier.pollSuppressed();
+        if (suppressed > 0) {
+            unlimitedMetric(SELF_METRIC_SUPPRESSED, counters, Counter::new).inc(suppressed);
+        }
+    }
+
+    private void checkAvailabilities(long timestamp) {
+        for (AvailabilityMetric avail : avails.values()) {
+            avail.check(timestamp);
+        }
+    }
+
+    /**
+     * Only called when creating a metric, as matching sampling rules is not free
+     */
+    private Sampling sampling(String name, String fullname) {
+        if (info.getSamplingPolicies().isEmpty()) {
+            return null;
+        }
+        return info.getSamplingPolicies().find(name, fullname).orElse(null);
+    }
+
+    private static Tags sampled(Tags tags, Sampling sampling) {
+        return sampling == null ? tags : Tags.from(tags, sampling.getTags());
+    }
+
+    private void flushAggregates(long timestamp) {
+        for (Counter counter : counters.values()) {
+            counter.flush(timestamp, (suffix, tags) -> outputCounter(unprefixed(counter.getName()) + suffix, tags));
+        }
+        for (Gauge gauge : gauges.values()) {
+            gauge.flush(timestamp, (suffix, tags) -> outputGauge(unprefixed(gauge.getName()) + suffix, tags));
+        }
+        for (Watch watch : watches.values()) {
+            watch.flush(timestamp, suffix -> outputGauge(unprefixed(watch.getName()) + suffix, Tags.empty()));
+        }
+    }
+
+    private String unprefixed(String fullname) {
+        return info.getPrefix()
+                .filter(fullname::startsWith)
+                .map(p -> fullname.substring(p.length()))
+                .orElse(fullname);
+    }
+
     /**
      * Create a new {@link Gauge} with the given name
      */
     public Gauge gauge(String name) {
-        return metric(name, Tags.empty(), gauges, Gauge::new);
+        return gauge(name, Tags.empty());
     }
 
     /**
      * Create a new {@link Gauge} with the given name and tags
      */
     public Gauge gauge(String name, Tags tags) {
-        return metric(name, tags, gauges, Gauge::new);
+        return gauge(name, tags, true);
+    }
+
+    /**
+     * Gauge published by another metric of this client, such as a histogram percentile: the metric filter was
+     * already applied to its parent
+     */
+    private Gauge outputGauge(String name, Tags tags) {
+        return gauge(name, tags, false);
+    }
+
+    private Gauge gauge(String name, Tags tags, boolean filtered) {
+        // Outputs of other metrics are not sampled: their parent already was
+        return metric(name, fullname -> filtered ? sampled(tags, sampling(name, fullname)) : tags, gauges,
+                (fullname, listener) -> new Gauge(fullname, listener,
+                        info.getGaugeDeadbands().find(name, fullname).orElse(null),
+                        info.getRollups().find(name, fullname).orElse(null),
+                        filtered ? sampling(name, fullname) : null,
+                        info.getTagAggregations().find(name, fullname).orElse(null)),
+                NoopMetrics::gauge,
+                filtered);
     }
 
     /**
      * Create a new {@link Counter} with the given name
      */
     public Counter counter(String name) {
-        return metric(name, Tags.empty(), counters, Counter::new);
+        return counter(name, Tags.empty());
     }
 
     /**
      * Create a new {@link Counter} with the given name and tags
      */
     public Counter counter(String name, Tags tags) {
-        return metric(name, tags, counters, Counter::new);
+        // Not tagged with the sampling: the count remains exact
+        return metric(name, tags, counters,
+                (fullname, listener) -> new Counter(fullname, listener, sampling(name, fullname),
+                        info.getTagAggregations().find(name, fullname).orElse(null)),
+                NoopMetrics::counter);
+    }
+
+    /**
+     * Counter published by another metric of this client, such as a tags aggregation group: the metric filter was
+     * already applied to its parent
+     */
+    private Counter outputCounter(String name, Tags tags) {
+        return metric(name, fullname -> tags, counters, Counter::new, NoopMetrics::counter, false);
     }
 
     /**
      * Create a new {@link Watch} with the given name
      */
     public Watch watch(String name) {
-        return metric(name, Tags.empty(), watches, Watch::new);
+        return watch(name, Tags.empty());
     }
 
     /**
      * Create a new {@link Watch} with the given name and tags
      */
     public Watch watch(String name, Tags tags) {
-        return metric(name, tags, watches, Watch::new);
+        return metric(name, tags, watches,
+                (fullname, listener) -> new Watch(fullname, listener,
+                        info.getRollups().find(name, fullname).orElse(null)),
+                NoopMetrics::watch);
+    }
+
+    /**
+     * Create a new {@link Timer} with the given name
+     */
+    public Timer timer(String name) {
+        return timer(name, Tags.empty());
+    }
+
+    /**
+     * Create a new {@link Timer} with the given name and tags
+     */
+    public Timer timer(String name, Tags tags) {
+        return metric(name, fullname -> sampled(tags, sampling(name, fullname)), timers,
+                (fullname, listener) -> new Timer(fullname, listener, sampling(name, fullname)),
+                NoopMetrics::timer,
+                true);
+    }
+
+    /**
+     * Create a new {@link Histogram} with the given name. It publishes gauges with the same name and a suffix,
+     * such as ".p99", at each report interval
+     */
+    public Histogram histogram(String name) {
+        return histogram(name, Tags.empty());
+    }
+
+    /**
+     * Create a new {@link Histogram} with the given name and tags. It publishes gauges with the same name and a suffix,
+     * such as ".p99", at each report interval. Tags are set on all these gauges
+     */
+    public Histogram histogram(String name, Tags tags) {
+        return reportableMetric(name, tags, histograms,
+                (n, t) -> {
+                    Sampling sampling = sampling(n, fullname(n));
+                    Tags histogramTags = sampled(t, sampling);
+                    return new Histogram(fullname(n), info.getHistogramPercentiles(),
+                            (suffix, outputTags) -> outputGauge(n + suffix, Tags.from(histogramTags, outputTags)),
+                            sampling);
+                },
+                NoopMetrics::histogram);
+    }
+
+    /**
+     * Create a new {@link Meter} with the given name. It publishes gauges with the same name and a suffix,
+     * such as ".rate.1m", at each report interval
+     */
+    public Meter meter(String name) {
+        return meter(name, Tags.empty(), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a new {@link Meter} with the given name and tags. It publishes gauges with the same name and a suffix,
+     * such as ".rate.1m", at each report interval. Tags are set on all these gauges
+     */
+    public Meter meter(String name, Tags tags) {
+        return meter(name, tags, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a new {@link Meter} with the given name and tags, that also publishes the exact count and rate of events
+     * over a sliding window. The window is rounded up to a multiple of the report interval
+     * @param name the meter name
+     * @param tags tags set on all published gauges
+     * @param window duration of the sliding window
+     * @param unit time unit of the window
+     */
+    public Meter meter(String name, Tags tags, long window, TimeUnit unit) {
+        return reportableMetric(name, tags, meters,
+                (n, t) -> new Meter(fullname(n), info.getReportInterval(), unit.toMillis(window),
+                        (suffix, outputTags) -> outputGauge(n + suffix, Tags.from(t, outputTags))),
+                NoopMetrics::meter);
+    }
+
+    /**
+     * Create a new {@link DistinctCounter} with the given name. It publishes a gauge with the same name at each
+     * report interval
+     */
+    public DistinctCounter distinctCounter(String name) {
+        return distinctCounter(name, Tags.empty(), DistinctCounter.DEFAULT_PRECISION);
+    }
+
+    /**
+     * Create a new {@link DistinctCounter} with the given name and tags. It publishes a gauge with the same name and
+     * tags at each report interval
+     */
+    public DistinctCounter distinctCounter(String name, Tags tags) {
+        return distinctCounter(name, tags, DistinctCounter.DEFAULT_PRECISION);
+    }
+
+    /**
+     * Create a new {@link DistinctCounter} with the given name, tags and precision. It publishes a gauge with the
+     * same name and tags at each report interval
+     * @param name the distinct counter name
+     * @param tags tags set on the published gauge
+     * @param precision the sketch uses 2^precision registers; higher precision means more accuracy and more memory
+     */
+    public DistinctCounter distinctCounter(String name, Tags tags, int precision) {
+        return reportableMetric(name, tags, distinctCounters,
+                (n, t) -> new DistinctCounter(fullname(n), precision,
+                        (suffix, outputTags) -> outputGauge(n + suffix, Tags.from(t, outputTags))),
+                NoopMetrics::distinctCounter);
+    }
+
+    /**
+     * Create a new {@link TopK} with the given name, publishing the {@link TopK#DEFAULT_SIZE} most frequent values
+     * at each report interval, on one counter per value ("name.top.[value]")
+     */
+    public TopK topK(String name) {
+        return topK(name, Tags.empty(), TopK.DEFAULT_SIZE);
+    }
+
+    /**
+     * Create a new {@link TopK} with the given name and tags, publishing the {@link TopK#DEFAULT_SIZE} most frequent
+     * values at each report interval, on one counter per value ("name.top.[value]") with these tags
+     */
+    public TopK topK(String name, Tags tags) {
+        return topK(name, tags, TopK.DEFAULT_SIZE);
+    }
+
+    /**
+     * Create a new {@link TopK} with the given name and tags, publishing the {@code size} most frequent values
+     * at each report interval, on one counter per value ("name.top.[value]")
+     * @param name the TopK name
+     * @param tags tags set on the published counters, in addition to the "value" tag of each counter
+     * @param size number of values to publish
+     */
+    public TopK topK(String name, Tags tags, int size) {
+        return reportableMetric(name, tags, topKs,
+                (n, t) -> new TopK(fullname(n), size,
+                        (suffix, outputTags) -> outputCounter(n + suffix, Tags.from(t, outputTags))),
+                NoopMetrics::topK);
     }
 
     /**
      * Create a new {@link AvailabilityMetric} with the given name
      */
     public AvailabilityMetric availability(String name) {
-        return metric(name, Tags.empty(), avails, AvailabilityMetric::new);
+        return availability(name, Tags.empty());
     }
 
     /**
      * Create a new {@link AvailabilityMetric} with the given name and tags
      */
     public AvailabilityMetric availability(String name, Tags tags) {
-        return metric(name, tags, avails, AvailabilityMetric::new);
+        return metric(name, tags, avails,
+                (fullname, listener) -> new AvailabilityMetric(fullname, listener,
+                        info.getAvailabilityPolicies().find(name, fullname).orElse(null)),
+                NoopMetrics::availability);
     }
 
     /**
      * Create a new {@link Logger} with the given name
      */
     public Logger logger(String name) {
-        return metric(name, Tags.empty(), loggers, Logger::new);
+        return metric(name, Tags.empty(), loggers, Logger::new, NoopMetrics::logger);
     }
 
     /**
      * Create a new {@link Logger} with the given name and tags
      */
     public Logger logger(String name, Tags tags) {
-        return metric(name, tags, loggers, Logger::new);
+        return metric(name, tags, loggers, Logger::new, NoopMetrics::logger);
+    }
+
+    /**
+     * Create a new {@link DerivedMetric}, computed from the given expression over other counters and gauges of this
+     * client. It publishes a gauge with the same name at each report interval
+     * @param name the derived metric name
+     * @param expression the expression, such as "cache.hit / (cache.hit + cache.miss)", see {@link Expression}
+     */
+    public DerivedMetric derivedMetric(String name, String expression) {
+        return derivedMetric(name, Expression.parse(expression));
+    }
+
+    /**
+     * Create a new {@link DerivedMetric}, computed from the given expression over other counters and gauges of this
+     * client. It publishes a gauge with the same name at each report interval
+     * @param name the derived metric name
+     * @param expression the parsed expression
+     */
+    public DerivedMetric derivedMetric(String name, Expression expression) {
+        return reportableMetric(name, Tags.empty(), derivedMetrics,
+                (n, t) -> new DerivedMetric(fullname(n), expression, this::currentValue,
+                        (suffix, outputTags) -> outputGauge(n + suffix, Tags.from(t, outputTags))),
+                NoopMetrics::derivedMetric);
+    }
+
+    /**
+     * Current value of a counter or gauge of this client, for derived metrics
+     */
+    private double currentValue(String name) {
+        String fullname = info.getPrefix().map(p -> p + name).orElse(name);
+        Counter counter = counters.get(fullname);
+        if (counter != null) {
+            return counter.getCount();
+        }
+        Gauge gauge = gauges.get(fullname);
+        return gauge == null ? Double.NaN : gauge.getValue();
+    }
+
+    /**
+     * Create a family of {@link Counter}, whose children are resolved by label values. See {@link MetricFamily}
+     * @param name base name of the family
+     * @param labelNames label names; each of them is used both as a name segment and as a tag
+     */
+    public MetricFamily<Counter> counterFamily(String name, String... labelNames) {
+        return new MetricFamily<>(name, labelNames, this::counter);
+    }
+
+    /**
+     * Create a family of {@link Gauge}, whose children are resolved by label values. See {@link MetricFamily}
+     * @param name base name of the family
+     * @param labelNames label names; each of them is used both as a name segment and as a tag
+     */
+    public MetricFamily<Gauge> gaugeFamily(String name, String... labelNames) {
+        return new MetricFamily<>(name, labelNames, this::gauge);
+    }
+
+    /**
+     * Create a family of {@link Watch}, whose children are resolved by label values. See {@link MetricFamily}
+     * @param name base name of the family
+     * @param labelNames label names; each of them is used both as a name segment and as a tag
+     */
+    public MetricFamily<Watch> watchFamily(String name, String... labelNames) {
+        return new MetricFamily<>(name, labelNames, this::watch);
+    }
+
+    /**
+     * Create a family of {@link Timer}, whose children are resolved by label values. See {@link MetricFamily}
+     * @param name base name of the family
+     * @param labelNames label names; each of them is used both as a name segment and as a tag
+     */
+    public MetricFamily<Timer> timerFamily(String name, String... labelNames) {
+        return new MetricFamily<>(name, labelNames, this::timer);
+    }
+
+    /**
+     * Create a family of {@link Histogram}, whose children are resolved by label values. See {@link MetricFamily}
+     * @param name base name of the family
+     * @param labelNames label names; each of them is used both as a name segment and as a tag
+     */
+    public MetricFamily<Histogram> histogramFamily(String name, String... labelNames) {
+        return new MetricFamily<>(name, labelNames, this::histogram);
+    }
+
+    /**
+     * Create a family of {@link Meter}, whose children are resolved by label values. See {@link MetricFamily}
+     * @param name base name of the family
+     * @param labelNames label names; each of them is used both as a name segment and as a tag
+     */
+    public MetricFamily<Meter> meterFamily(String name, String... labelNames) {
+        return new MetricFamily<>(name, labelNames, this::meter);
+    }
+
+    /**
+     * Create a family of {@link DistinctCounter}, whose children are resolved by label values. See {@link MetricFamily}
+     * @param name base name of the family
+     * @param labelNames label names; each of them is used both as a name segment and as a tag
+     */
+    public MetricFamily<DistinctCounter> distinctCounterFamily(String name, String... labelNames) {
+        return new MetricFamily<>(name, labelNames, this::distinctCounter);
+    }
+
+    /**
+     * Create a family of {@link TopK}, whose children are resolved by label values. See {@link MetricFamily}
+     * @param name base name of the family
+     * @param labelNames label names; each of them is used both as a name segment and as a tag
+     */
+    public MetricFamily<TopK> topKFamily(String name, String... labelNames) {
+        return new MetricFamily<>(name, labelNames, this::topK);
+    }
+
+    /**
+     * Create a family of {@link AvailabilityMetric}, whose children are resolved by label values.
+     * See {@link MetricFamily}
+     * @param name base name of the family
+     * @param labelNames label names; each of them is used both as a name segment and as a tag
+     */
+    public MetricFamily<AvailabilityMetric> availabilityFamily(String name, String... labelNames) {
+        return new MetricFamily<>(name, labelNames, this::availability);
+    }
+
+    /**
+     * Open a batch: datapoints emitted while running code in the batch are collected, then sent in a single request
+     * with the given timestamp when the batch is flushed. See {@link MetricsBatch}
+     * @param timestamp timestamp of all the datapoints of the batch
+     */
+    public MetricsBatch openBatch(long timestamp) {
+        return metricsNotifier.batch(timestamp);
+    }
+
+    /**
+     * Send a batch at the next report interval, from the reporting thread, instead of making a request on the current
+     * thread. Batches pending at the same time are sent in a single request. This is meant for threads that must not
+     * wait for the network, such as JMX notification threads.
+     */
+    public void sendLater(MetricsBatch batch) {
+        pendingBatches.add(batch);
+        if (sendingPending.compareAndSet(false, true)) {
+            schedule(timestamp -> MetricsBatch.flushAll(pendingBatches));
+        }
     }
 
     public MonitoringSession.Builder prepareMonitoringSession(long frequency, TimeUnit timeUnit) {
@@ -152,7 +740,58 @@ public class HawkularClient {
         return new MetricBuilder(this);
     }
 
+    /**
+     * Remove a metric from this client. The metric object remains usable, but is detached from the client: asking
+     * the client for a metric with the same name will create a new one.
+     * @param metric the metric to remove
+     * @return true if the metric was removed, false if it wasn't registered in this client
+     */
+    public boolean remove(Metric metric) {
+        Map<String, ? extends Metric> pool;
+        if (metric instanceof Counter) {
+            pool = counters;
+        } else if (metric instanceof Gauge) {
+            pool = gauges;
+        } else if (metric instanceof Watch) {
+            pool = watches;
+        } else if (metric instanceof Timer) {
+            pool = timers;
+        } else if (metric instanceof AvailabilityMetric) {
+            pool = avails;
+        } else if (metric instanceof Logger) {
+            pool = loggers;
+        } else if (metric instanceof Histogram) {
+            pool = histograms;
+        } else if (metric instanceof Meter) {
+            pool = meters;
+        } else if (metric instanceof DistinctCounter) {
+            pool = distinctCounters;
+        } else if (metric instanceof TopK) {
+            pool = topKs;
+        } else if (metric instanceof DerivedMetric) {
+            pool = derivedMetrics;
+        } else {
+            return false;
+        }
+        if (pool.remove(metric.getName(), metric)) {
+            ownMetrics.remove(metric);
+            onRemoved(metric);
+            return true;
+        }
+        return false;
+    }
+
     public HawkularClientInfo getInfo() {
         return info;
     }
+
+    /**
+     * Stop periodic reports of this client. Metrics remain usable.
+     */
+    public void stop() {
+        intervalReporter.unregister(periodicTasks);
+        periodicTasks.clear();
+        sendingPending.set(false);
+        MetricsBatch.flushAll(pendingBatches);
+    }
 }
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -33,13 +34,22 @@ import org.hawkular.metrics.client.common.http.HawkularHttpClient;
 import org.hawkular.metrics.client.common.http.JdkHawkularHttpClient;
 import org.hawkular.metrics.client.config.Credential;
 import org.hawkular.metrics.client.config.HawkularClientInfo;
+import org.hawkular.metrics.client.config.HawkularYamlConfig;
+import org.hawkular.metrics.client.model.Availability;
+import org.hawkular.metrics.client.model.AvailabilityPolicy;
+import org.hawkular.metrics.client.model.Deadband;
+import org.hawkular.metrics.client.model.Expression;
+import org.hawkular.metrics.client.model.Rollup;
+import org.hawkular.metrics.client.model.Sampling;
 import org.hawkular.metrics.client.model.Tag;
+import org.hawkular.metrics.client.model.TagAggregation;
 import org.hawkular.metrics.client.model.Tags;
 
 public class HawkularClientBuilder {
 
     private static final String KEY_HEADER_TENANT = "Hawkular-Tenant";
     private static final String KEY_HEADER_AUTHORIZATION = "Authorization";
+    private static final String PROPKEY_DISABLED = "hawkular.java.toolbox.disabled";
 
     private final String tenant;
     private Optional<Credential> basicAuthCredential = Optional.empty();
@@ -53,6 +63,20 @@ public class HawkularClientBuilder {
     private final Collection<RegexTags> regexTags = new ArrayList<>();
     private Optional<Long> failoverCacheDuration = Optional.of(1000L * 60L * 10L); // In milliseconds; default: 10min
     private Optional<Integer> failoverCacheMaxSize = Optional.empty();
+    private final MetricFilter metricFilter = new MetricFilter();
+    private Optional<Integer> maxMetrics = Optional.empty();
+    private Optional<Integer> maxTagSetsPerMetric = Optional.empty();
+    private boolean dropOverflow = false;
+    private long reportInterval = 10000L; // In milliseconds; default: 10sec
+    private Optional<Long> evictionTtl = Optional.empty();
+    private double[] histogramPercentiles = {0.5, 0.95, 0.99, 0.999};
+    private final MetricRules<Deadband> gaugeDeadbands = new MetricRules<>();
+    private final MetricRules<AvailabilityPolicy> availabilityPolicies = new MetricRules<>();
+    private final MetricRules<Rollup> rollups = new MetricRules<>();
+    private final MetricRules<Sampling> samplingPolicies = new MetricRules<>();
+    private final MetricRules<TagAggregation> tagAggregations = new MetricRules<>();
+    private final Map<String, Expression> derivedMetrics = new LinkedHashMap<>();
+    private boolean disabled = Boolean.getBoolean(PROPKEY_DISABLED);
 
     /**
      * Create a new builder for {@link HawkularClient}
@@ -62,6 +86,124 @@ public class HawkularClientBuilder {
         this.tenant = tenant;
     }
 
+    /**
+     * This is a shortcut function to use with yaml config, that also reads toolbox-specific settings
+     */
+    public static HawkularClientBuilder fromConfig(HawkularYamlConfig config) {
+        HawkularClientBuilder builder = loggerFromConfig(config);
+        if (config.getDerivedMetrics() != null) {
+            config.getDerivedMetrics().forEach(builder::derivedMetric);
+        }
+        return builder;
+    }
+
+    /**
+     * Same as {@link #fromConfig(HawkularYamlConfig)}, without derived metrics: they are computed by the root client
+     * only, so logger clients don't need to parse them
+     */
+    static HawkularClientBuilder loggerFromConfig(HawkularYamlConfig config) {
+        HawkularClientBuilder builder = fromConfig((HawkularClientConfig) config);
+        if (config.isDisabled()) {
+            builder.disable();
+        }
+        if (config.getAllowedMetrics() != null) {
+            config.getAllowedMetrics().forEach(builder::allowMetrics);
+        }
+        if (config.getDeniedMetrics() != null) {
+            config.getDeniedMetrics().forEach(builder::denyMetrics);
+        }
+        if (config.getMaxMetrics() != null) {
+            builder.maxMetrics(config.getMaxMetrics());
+        }
+        if (config.getMaxTagSetsPerMetric() != null) {
+            builder.maxTagSetsPerMetric(config.getMaxTagSetsPerMetric());
+        }
+        if (config.isDropOverflow()) {
+            builder.dropOverflow();
+        }
+        if (config.getReportInterval() != null) {
+            builder.reportInterval(config.getReportInterval(), TimeUnit.MILLISECONDS);
+        }
+        if (config.getEvictionTtl() != null) {
+            builder.evictIdleMetrics(config.getEvictionTtl(), TimeUnit.MILLISECONDS);
+        }
+        if (config.getHistogramPercentiles() != null) {
+            builder.histogramPercentiles(config.getHistogramPercentiles().stream().mapToDouble(Double::doubleValue)
+                    .toArray());
+        }
+        if (config.getGaugeDeadbands() != null) {
+            config.getGaugeDeadbands().forEach((metric, deadband) -> {
+                long heartbeat = deadband.getHeartbeat() == null ? 0 : deadband.getHeartbeat();
+                if (deadband.getAbsolute() != null) {
+                    builder.gaugeDeadband(metric, Deadband.absolute(deadband.getAbsolute(), heartbeat));
+                } else if (deadband.getRelative() != null) {
+                    builder.gaugeDeadband(metric, Deadband.relative(deadband.getRelative(), heartbeat));
+                } else {
+                    builder.gaugeDeadband(metric, Deadband.changeOnly(heartbeat));
+                }
+            });
+        }
+        if (config.getAvailabilityPolicies() != null) {
+            config.getAvailabilityPolicies().forEach((metric, policyConfig) -> {
+                AvailabilityPolicy policy = AvailabilityPolicy.transitionsOnly();
+                if (policyConfig.getKeepAlive() != null) {
+                    policy = policy.keepAlive(policyConfig.getKeepAlive(), TimeUnit.MILLISECONDS);
+                }
+                if (policyConfig.getWatchdogTimeout() != null) {
+                    Availability state = policyConfig.getWatchdogState() == null
+                            ? Availability.DOWN
+                            : Availability.valueOf(policyConfig.getWatchdogState().toUpperCase());
+                    policy = policy.watchdog(policyConfig.getWatchdogTimeout(), TimeUnit.MILLISECONDS, state);
+                }
+                builder.availabilityPolicy(metric, policy);
+            });
+        }
+        if (config.getRollups() != null) {
+            config.getRollups().forEach((metric, rollupConfig) -> {
+                Rollup.Stat[] stats = rollupConfig.getStats().stream()
+                        .map(stat -> Rollup.Stat.valueOf(stat.toUpperCase()))
+                        .toArray(Rollup.Stat[]::new);
+                if (rollupConfig.isDerived()) {
+                    builder.rollup(metric, Rollup.derived(stats));
+                } else if (stats.length == 1) {
+                    builder.rollup(metric, Rollup.single(stats[0]));
+                } else {
+                    throw new IllegalArgumentException("Rollup of " + metric
+                            + " must have a single statistic, or be derived");
+                }
+            });
+        }
+        if (config.getSamplingPolicies() != null) {
+            config.getSamplingPolicies().forEach((metric, samplingConfig) -> {
+                if (samplingConfig.getProbability() != null) {
+                    builder.samplingPolicy(metric, Sampling.probability(samplingConfig.getProbability()));
+                } else if (samplingConfig.getEveryNth() != null) {
+                    builder.samplingPolicy(metric, Sampling.everyNth(samplingConfig.getEveryNth()));
+                } else if (samplingConfig.getMaxRate() != null) {
+                    builder.samplingPolicy(metric, Sampling.rateLimit(samplingConfig.getMaxRate()));
+                } else {
+                    throw new IllegalArgumentException("Sampling policy of " + metric
+                            + " must define probability, everyNth or maxRate");
+                }
+            });
+        }
+        if (config.getTagAggregations() != null) {
+            config.getTagAggregations().forEach((metric, aggregationConfig) -> {
+                TagAggregation aggregation = TagAggregation.drop(aggregationConfig.getDropTags()
+                        .toArray(new String[aggregationConfig.getDropTags().size()]));
+                if (aggregationConfig.getGaugeStat() != null) {
+                    aggregation = aggregation.gaugeStat(
+                            Rollup.Stat.valueOf(aggregationConfig.getGaugeStat().toUpperCase()));
+                }
+                if (aggregationConfig.getMaxGroups() != null) {
+                    aggregation = aggregation.maxGroups(aggregationConfig.getMaxGroups());
+                }
+                builder.tagAggregation(metric, aggregation);
+            });
+        }
+        return builder;
+    }
+
     /**
      * This is a shortcut function to use with automatically populated pojos such as coming from yaml config
      */
@@ -212,6 +354,166 @@ public class HawkularClientBuilder {
         return this;
     }
 
+    /**
+     * Add an allow rule on metric names. When at least one allow rule is set, only matching metrics are created,
+     * others are no-op.<br/>
+     * A rule can be an exact metric name, a prefix ending with "*" (like "guava.cache.*"), or a regex between slashes
+     * (like "/guava\..*&#47;")
+     * @param rule the allow rule
+     */
+    public HawkularClientBuilder allowMetrics(String rule) {
+        metricFilter.allow(rule);
+        return this;
+    }
+
+    /**
+     * Add a deny rule on metric names. Matching metrics will be no-op, so they cost nothing and send nothing.
+     * Deny rules take precedence over allow rules.<br/>
+     * A rule can be an exact metric name, a prefix ending with "*" (like "guava.cache.*"), or a regex between slashes
+     * (like "/guava\..*&#47;")
+     * @param rule the deny rule
+     */
+    public HawkularClientBuilder denyMetrics(String rule) {
+        metricFilter.deny(rule);
+        return this;
+    }
+
+    /**
+     * Set the maximum number of distinct metric ids for this client. Once reached, new metrics are redirected to a
+     * shared "__overflow__" metric of the same type, or dropped when {@link #dropOverflow()} is set.<br/>
+     * Overflows are reported in the "hawkular.toolbox.overflow.metrics" counter.<br/>
+     * By default this parameter is unset, which means there's no maximum
+     * @param max max number of metric ids
+     */
+    public HawkularClientBuilder maxMetrics(int max) {
+        maxMetrics = Optional.of(max);
+        return this;
+    }
+
+    /**
+     * Set the maximum number of distinct datapoint tags sets per metric. Once reached, datapoints with new tags sets
+     * are tagged "__overflow__" instead of their own tags, or dropped when {@link #dropOverflow()} is set.<br/>
+     * Overflows are reported in the "hawkular.toolbox.overflow.tags" counter.<br/>
+     * By default this parameter is unset, which means there's no maximum
+     * @param max max number of datapoint tags sets per metric
+     */
+    public HawkularClientBuilder maxTagSetsPerMetric(int max) {
+        maxTagSetsPerMetric = Optional.of(max);
+        return this;
+    }
+
+    /**
+     * Drop overflowing metrics and datapoints rather than redirecting them to "__overflow__"
+     */
+    public HawkularClientBuilder dropOverflow() {
+        dropOverflow = true;
+        return this;
+    }
+
+    /**
+     * Set the interval for periodic reports, such as self-metrics. Reports are aligned on interval boundaries.<br/>
+     * Default interval is 10 seconds
+     * @param interval the interval
+     * @param unit time unit of the interval
+     */
+    public HawkularClientBuilder reportInterval(long interval, TimeUnit unit) {
+        reportInterval = TimeUnit.MILLISECONDS.convert(interval, unit);
+        return this;
+    }
+
+    /**
+     * Remove metrics from the client registry when they haven't been updated for the given time. Eviction runs
+     * incrementally in background, at each report interval.<br/>
+     * Evicted metrics that are still referenced elsewhere remain usable, but asking the client for the same metric
+     * again will create a new one.<br/>
+     * By default this parameter is unset, which means metrics are never evicted
+     * @param ttl time to live of idle metrics
+     * @param unit time unit of the ttl
+     */
+    public HawkularClientBuilder evictIdleMetrics(long ttl, TimeUnit unit) {
+        evictionTtl = Optional.of(TimeUnit.MILLISECONDS.convert(ttl, unit));
+        return this;
+    }
+
+    /**
+     * Set the percentiles published by histograms, as quantiles between 0 and 1.<br/>
+     * Default percentiles are 0.5, 0.95, 0.99 and 0.999
+     * @param quantiles the quantiles, such as 0.99 for the 99th percentile
+     */
+    public HawkularClientBuilder histogramPercentiles(double... quantiles) {
+        for (double quantile : quantiles) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("Invalid quantile: " + quantile + ", must be between 0 and 1");
+            }
+        }
+        histogramPercentiles = quantiles.clone();
+        return this;
+    }
+
+    /**
+     * Set a deadband on gauges: values within the band around the last sent value are not sent, unless the heartbeat
+     * expired. The number of suppressed values is reported as the "hawkular.toolbox.deadband.suppressed" counter.
+     * @param metricOrRegex metric name, or regex between slashes, as for per-metric tags
+     * @param deadband the deadband
+     */
+    public HawkularClientBuilder gaugeDeadband(String metricOrRegex, Deadband deadband) {
+        gaugeDeadbands.add(metricOrRegex, deadband);
+        return this;
+    }
+
+    /**
+     * Set a policy on availability metrics: only transitions are sent, plus optional keep-alive and watchdog
+     * @param metricOrRegex metric name, or regex between slashes, as for per-metric tags
+     * @param policy the policy
+     */
+    public HawkularClientBuilder availabilityPolicy(String metricOrRegex, AvailabilityPolicy policy) {
+        availabilityPolicies.add(metricOrRegex, policy);
+        return this;
+    }
+
+    /**
+     * Set a rollup on gauges and watches: values are accumulated during each report interval, and only their
+     * summary is sent, with the interval timestamp
+     * @param metricOrRegex metric name, or regex between slashes, as for per-metric tags
+     * @param rollup the rollup
+     */
+    public HawkularClientBuilder rollup(String metricOrRegex, Rollup rollup) {
+        rollups.add(metricOrRegex, rollup);
+        return this;
+    }
+
+    /**
+     * Set a sampling policy on gauges, counters, timers and histograms: points are sampled at record time, and
+     * sampled metrics are tagged with the sampling ratio
+     * @param metricOrRegex metric name, or regex between slashes, as for per-metric tags
+     * @param sampling the sampling policy
+     */
+    public HawkularClientBuilder samplingPolicy(String metricOrRegex, Sampling sampling) {
+        samplingPolicies.add(metricOrRegex, sampling);
+        return this;
+    }
+
+    /**
+     * Set a tags aggregation on counters and gauges: tags are dropped from datapoints, which are aggregated across
+     * their values and sent at each report interval
+     * @param metricOrRegex metric name, or regex between slashes, as for per-metric tags
+     * @param aggregation the tags aggregation
+     */
+    public HawkularClientBuilder tagAggregation(String metricOrRegex, TagAggregation aggregation) {
+        tagAggregations.add(metricOrRegex, aggregation);
+        return this;
+    }
+
+    /**
+     * Declare a derived metric, computed at each report interval from other counters and gauges, and sent as a gauge
+     * @param name the derived metric name
+     * @param expression the expression, such as "cache.hit / (cache.hit + cache.miss)". It is parsed immediately.
+     */
+    public HawkularClientBuilder derivedMetric(String name, String expression) {
+        derivedMetrics.put(name, Expression.parse(expression));
+        return this;
+    }
+
     /**
      * Set the failover cache duration (in milliseconds)<br/>
      * This cache is used to store post attempts in memory when the hawkular server cannot be reached<br/>
@@ -265,7 +567,20 @@ public class HawkularClientBuilder {
         return this;
     }
 
+    /**
+     * Disable the client: all metrics will be no-op, nothing will ever be sent to Hawkular.<br/>
+     * The client can also be disabled by setting system property "hawkular.java.toolbox.disabled" to true,
+     * or with "disabled: true" in YAML config
+     */
+    public HawkularClientBuilder disable() {
+        disabled = true;
+        return this;
+    }
+
     private HawkularHttpClient setupClient() {
+        if (disabled) {
+            return NoopHttpClient.INSTANCE;
+        }
         HawkularHttpClient client = httpClientProvider
                 .map(provider -> provider.apply(uri))
                 .orElseGet(() -> new JdkHawkularHttpClient(uri));
@@ -285,20 +600,35 @@ public class HawkularClientBuilder {
      */
     public HawkularClient build() {
         HawkularHttpClient client = setupClient();
-        return new HawkularClient(new HawkularClientInfo(client, tenant, uri, basicAuthCredential, bearerToken, prefix, globalTags, perMetricTags, regexTags));
+        return new HawkularClient(new HawkularClientInfo(client, tenant, uri, basicAuthCredential, bearerToken, prefix,
+                globalTags, perMetricTags, regexTags, metricFilter, maxMetrics, maxTagSetsPerMetric, dropOverflow,
+                reportInterval, evictionTtl, histogramPercentiles, gaugeDeadbands,
+                availabilityPolicies, rollups, samplingPolicies, tagAggregations, derivedMetrics, disabled));
     }
 
     public HawkularLogger buildLogger(Class<?> clazz) {
-        HawkularClient client = this.addGlobalTag("class", clazz.getName())
+        return new HawkularLogger(buildLoggerClient(clazz));
+    }
+
+    public HawkularLogger buildLogger(String source) {
+        return new HawkularLogger(buildLoggerClient(source));
+    }
+
+    /**
+     * Logger clients don't compute derived metrics: their names are prefixed, so that expressions would never find
+     * the metrics they refer to. Derived metrics belong to the root client.
+     */
+    HawkularClient buildLoggerClient(Class<?> clazz) {
+        derivedMetrics.clear();
+        return this.addGlobalTag("class", clazz.getName())
                 .prefixedWith(clazz.getSimpleName() + ".")
                 .build();
-        return new HawkularLogger(client);
     }
 
-    public HawkularLogger buildLogger(String source) {
-        HawkularClient client = this.addGlobalTag("source", source)
+    HawkularClient buildLoggerClient(String source) {
+        derivedMetrics.clear();
+        return this.addGlobalTag("source", source)
                 .prefixedWith(source + ".")
                 .build();
-        return new HawkularLogger(client);
     }
 }
@@ -19,20 +19,21 @@ package org.hawkular.metrics.client;
 import static java.util.stream.Collectors.toMap;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.hawkular.metrics.client.common.HawkularClientConfig;
 import org.hawkular.metrics.client.config.HawkularYamlConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +49,7 @@ public class HawkularFactory {
     private static final String PROPKEY_CONFIG_FILE = "hawkular.java.toolbox.config";
     private static final String DEFAULT_FILE_PATH = "hawkular.yaml";
     private static final List<Variable> VARIABLES = new ArrayList<>();
+    private static final ConcurrentMap<String, HawkularFactory> FACTORIES = new ConcurrentHashMap<>();
 
     static {
         VARIABLES.add(new Variable(Pattern.compile("\\$\\{host}"), () -> {
@@ -59,46 +61,85 @@ public class HawkularFactory {
         }));
     }
 
-    private final HawkularClientConfig config;
+    // YAML source of the config, or null when unconfigured. Each client gets its own config parsed from it, so that
+    // none can alter the config of the others
+    private final String source;
 
-    private HawkularFactory(HawkularClientConfig config) {
-        this.config = config;
+    private HawkularFactory(String source) {
+        this.source = source;
     }
 
     /**
      * Initialize the factory with default config file.<br/>
      * First, it will look for YAML file path given by system property "hawkular.java.toolbox.config"<br/>
      * If not found, it looks for "hawkular.yaml" from current working dir<br/>
-     * Or finally, loads a default, unconfigured Hawkular client config
+     * Or finally, loads a default, unconfigured Hawkular client config<br/>
+     * Factories are cached process-wide per config file path, so the file is read only once. Missing or unreadable
+     * files are not cached: they are looked up again on next load
      */
     public static HawkularFactory load() {
-        return new HawkularFactory(loadConfig(Optional.ofNullable(System.getProperty(PROPKEY_CONFIG_FILE))));
+        return loadCached(Optional.ofNullable(System.getProperty(PROPKEY_CONFIG_FILE)));
     }
 
     /**
      * Initialize the factory with the input YAML config file.<br/>
-     * If not found, loads a default, unconfigured Hawkular client config
+     * If not found, loads a default, unconfigured Hawkular client config<br/>
+     * Factories are cached process-wide per config file path, so the file is read only once. Missing or unreadable
+     * files are not cached: they are looked up again on next load
      */
     public static HawkularFactory loadFrom(String configFilePath) {
-        return new HawkularFactory(loadConfig(Optional.of(configFilePath)));
+        return loadCached(Optional.of(configFilePath));
     }
 
-    private static HawkularYamlConfig loadConfig(Optional<String> filepath) {
+    /**
+     * Clear the process-wide factory cache. Next calls to {@link #load()} or {@link #loadFrom(String)} will read
+     * config files again
+     */
+    public static void clearCache() {
+        FACTORIES.clear();
+    }
+
+    private static HawkularFactory loadCached(Optional<String> filepath) {
+        String key = new File(filepath.orElse(DEFAULT_FILE_PATH)).getAbsolutePath();
+        HawkularFactory factory = FACTORIES.get(key);
+        if (factory != null) {
+            return factory;
+        }
+        String source = readConfig(filepath);
+        if (source == null) {
+            return new HawkularFactory(null);
+        }
+        // Fail on invalid YAML when loading, rather than when creating clients
+        parseConfig(source);
+        return FACTORIES.computeIfAbsent(key, k -> new HawkularFactory(source));
+    }
+
+    /**
+     * @return the content of the config file, or null if it can't be found or read
+     */
+    private static String readConfig(Optional<String> filepath) {
         try {
             File configFile = findConfigurationFile(filepath);
             if (configFile == null) {
                 LOG.warn("Configuration file not found");
-                return loadUnconfigured();
+                return null;
             }
-            Yaml yaml = new Yaml(new Constructor(HawkularYamlConfig.class));
-            InputStream input = new FileInputStream(configFile);
-            return replaceVariables((HawkularYamlConfig) yaml.load(input));
+            return new String(Files.readAllBytes(configFile.toPath()), StandardCharsets.UTF_8);
         } catch (IOException e) {
             LOG.error("Could not read Yaml config: ", e);
-            return loadUnconfigured();
+            return null;
         }
     }
 
+    private static HawkularYamlConfig parseConfig(String source) {
+        Yaml yaml = new Yaml(new Constructor(HawkularYamlConfig.class));
+        return replaceVariables((HawkularYamlConfig) yaml.load(source));
+    }
+
+    private HawkularYamlConfig config() {
+        return source == null ? loadUnconfigured() : parseConfig(source);
+    }
+
     private static HawkularYamlConfig replaceVariables(HawkularYamlConfig config) {
         if (config.getTenant() != null) {
             config.setTenant(replaceVariables(config.getTenant()));
@@ -166,11 +207,12 @@ public class HawkularFactory {
      *         <li>class: [class full name]</li>
      *         <li>severity: [debug|info|warning|error]</li>
      *     </ul>
+     *     The underlying {@link HawkularClient} is only created when the first message is logged.
      * @param clazz related class
      * @return the logger
      */
     public HawkularLogger logger(Class<?> clazz) {
-        return HawkularClientBuilder.fromConfig(config).buildLogger(clazz);
+        return new HawkularLogger(() -> HawkularClientBuilder.loggerFromConfig(config()).buildLoggerClient(clazz));
     }
 
     /**
@@ -184,11 +226,12 @@ public class HawkularFactory {
      *         <li>source: [input source]</li>
      *         <li>severity: [debug|info|warning|error]</li>
      *     </ul>
+     *     The underlying {@link HawkularClient} is only created when the first message is logged.
      * @param source the source name
      * @return the logger
      */
     public HawkularLogger logger(String source) {
-        return HawkularClientBuilder.fromConfig(config).buildLogger(source);
+        return new HawkularLogger(() -> HawkularClientBuilder.loggerFromConfig(config()).buildLoggerClient(source));
     }
 
     /**
@@ -196,7 +239,7 @@ public class HawkularFactory {
      * @return a new {@link HawkularClient}
      */
     public HawkularClient create() {
-        return HawkularClientBuilder.fromConfig(config).build();
+        return HawkularClientBuilder.fromConfig(config()).build();
     }
 
     /**
@@ -205,12 +248,13 @@ public class HawkularFactory {
      * @return an {@link HawkularClientBuilder}
      */
     public HawkularClientBuilder builder() {
-        return HawkularClientBuilder.fromConfig(config);
+        return HawkularClientBuilder.fromConfig(config());
     }
 
     private static class Variable {
         private final Pattern pattern;
         private final Supplier<String> replacementSupplier;
+        private volatile String replacement;
 
         private Variable(Pattern pattern, Supplier<String> replacementSupplier) {
             this.pattern = pattern;
@@ -218,9 +262,21 @@ public class HawkularFactory {
         }
 
         private String replace(String source) {
-            String replacement = replacementSupplier.get();
             Matcher matcher = pattern.matcher(source);
-            return matcher.replaceAll(replacement);
+            if (!matcher.find()) {
+                return source;
+            }
+            return matcher.replaceAll(Matcher.quoteReplacement(getReplacement()));
+        }
+
+        private String getReplacement() {
+            // Resolved once, on first use: some variables (like host name) are expensive to compute
+            String resolved = replacement;
+            if (resolved == null) {
+                resolved = replacementSupplier.get();
+                replacement = resolved;
+            }
+            return resolved;
         }
     }
 }
@@ -16,7 +16,12 @@
  */
 package org.hawkular.metrics.client;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.json.Json;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 
@@ -41,6 +46,30 @@ public final class HawkularJson {
                 .toString();
     }
 
+    /**
+     * Several datapoints of several metrics, in a single body
+     * @param metrics metric of each datapoint
+     * @param dataPoints datapoints, in the same order as metrics
+     */
+    public static String metricsToString(List<Metric> metrics, List<DataPoint<?>> dataPoints) {
+        Map<String, Map<String, JsonArrayBuilder>> byType = new LinkedHashMap<>();
+        for (int i = 0; i < metrics.size(); i++) {
+            Metric metric = metrics.get(i);
+            byType.computeIfAbsent(metric.getHawkularType(), t -> new LinkedHashMap<>())
+                    .computeIfAbsent(metric.getName(), n -> Json.createArrayBuilder())
+                    .add(dataPoints.get(i).toJson());
+        }
+        JsonObjectBuilder json = Json.createObjectBuilder();
+        byType.forEach((type, byName) -> {
+            JsonArrayBuilder array = Json.createArrayBuilder();
+            byName.forEach((name, dps) -> array.add(Json.createObjectBuilder()
+                    .add("id", name)
+                    .add("dataPoints", dps)));
+            json.add(type, array);
+        });
+        return json.build().toString();
+    }
+
     public static String tagsToString(Tags tags) {
         JsonObjectBuilder jsonObjectBuilder = Json.createObjectBuilder();
         tags.forEachPresent(jsonObjectBuilder::add);
@@ -16,6 +16,11 @@
  */
 package org.hawkular.metrics.client;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import org.hawkular.metrics.client.model.Counter;
+import org.hawkular.metrics.client.model.Logger;
 import org.hawkular.metrics.client.model.Tag;
 import org.hawkular.metrics.client.model.Tags;
 
@@ -26,15 +31,71 @@ public class HawkularLogger {
     private static final Tags TAG_SEVERITY_INFO = Tags.from(TAG_SEVERITY.valued("info"));
     private static final Tags TAG_SEVERITY_WARNING = Tags.from(TAG_SEVERITY.valued("warning"));
     private static final Tags TAG_SEVERITY_ERROR = Tags.from(TAG_SEVERITY.valued("error"));
-
-    private final HawkularClient inst;
+    private static final int DEBUG = 0;
+    private static final int INFO = 1;
+    private static final int WARNING = 2;
+    private static final int ERROR = 3;
+    private static final String[] SEVERITIES = {"debug", "info", "warning", "error"};
+    private static final Tags[] SEVERITY_TAGS = {TAG_SEVERITY_DEBUG, TAG_SEVERITY_INFO, TAG_SEVERITY_WARNING, TAG_SEVERITY_ERROR};
+
+    private final Supplier<HawkularClient> instSupplier;
+    private volatile HawkularClient inst;
+    // Metrics per severity, resolved on first use
+    private final AtomicReferenceArray<Channel> channels = new AtomicReferenceArray<>(SEVERITIES.length);
 
     HawkularLogger(HawkularClient inst) {
+        this.instSupplier = () -> inst;
         this.inst = inst;
     }
 
+    /**
+     * Lazy logger: the client will only be created when first needed
+     */
+    HawkularLogger(Supplier<HawkularClient> instSupplier) {
+        this.instSupplier = instSupplier;
+    }
+
+    private HawkularClient inst() {
+        HawkularClient client = inst;
+        if (client == null) {
+            synchronized (this) {
+                client = inst;
+                if (client == null) {
+                    client = instSupplier.get();
+                    inst = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Whether the underlying client was created yet
+     */
+    boolean hasClient() {
+        return inst != null;
+    }
+
+    private Channel channel(int severity) {
+        Channel channel = channels.get(severity);
+        if (channel == null) {
+            HawkularClient client = inst();
+            channel = new Channel(
+                    client.counter(SEVERITIES[severity] + ".count", SEVERITY_TAGS[severity]),
+                    client.logger(SEVERITIES[severity] + ".logs", SEVERITY_TAGS[severity]));
+            channels.set(severity, channel);
+        }
+        return channel;
+    }
+
+    private void log(int severity, String message, Tags dpTags) {
+        Channel channel = channel(severity);
+        channel.counter.inc(dpTags);
+        channel.logger.log(message, dpTags);
+    }
+
     public String getMetricsBase() {
-        return inst.getInfo().getPrefix().orElse("");
+        return inst().getInfo().getPrefix().orElse("");
     }
 
     /**
@@ -51,8 +112,7 @@ public class HawkularLogger {
      * @param dpTags datapoint tags to associate with this log
      */
     public void debug(String message, Tags dpTags) {
-        inst.counter("debug.count", TAG_SEVERITY_DEBUG).inc(dpTags);
-        inst.logger("debug.logs", TAG_SEVERITY_DEBUG).log(message, dpTags);
+        log(DEBUG, message, dpTags);
     }
 
     /**
@@ -86,8 +146,7 @@ public class HawkularLogger {
      * @param dpTags datapoint tags to associate with this log
      */
     public void info(String message, Tags dpTags) {
-        inst.counter("info.count", TAG_SEVERITY_INFO).inc(dpTags);
-        inst.logger("info.logs", TAG_SEVERITY_INFO).log(message, dpTags);
+        log(INFO, message, dpTags);
     }
 
     /**
@@ -121,8 +180,7 @@ public class HawkularLogger {
      * @param dpTags datapoint tags to associate with this log
      */
     public void warn(String message, Tags dpTags) {
-        inst.counter("warning.count", TAG_SEVERITY_WARNING).inc(dpTags);
-        inst.logger("warning.logs", TAG_SEVERITY_WARNING).log(message, dpTags);
+        log(WARNING, message, dpTags);
     }
 
     /**
@@ -156,8 +214,7 @@ public class HawkularLogger {
      * @param dpTags datapoint tags to associate with this log
      */
     public void error(String message, Tags dpTags) {
-        inst.counter("error.count", TAG_SEVERITY_ERROR).inc(dpTags);
-        inst.logger("error.logs", TAG_SEVERITY_ERROR).log(message, dpTags);
+        log(ERROR, message, dpTags);
     }
 
     /**
@@ -184,4 +241,14 @@ public class HawkularLogger {
         }
         return sb.toString();
     }
+
+    private static final class Channel {
+        private final Counter counter;
+        private final Logger logger;
+
+        private Channel(Counter counter, Logger logger) {
+            this.counter = counter;
+            this.logger = logger;
+        }
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs periodic reporting tasks, on a single daemon thread that is only started when the first task is registered,
+ * and stopped when the last one is unregistered.<br/>
+ * There is one reporter per interval, shared by all clients: many clients, such as those of loggers, don't mean many
+ * threads.<br/>
+ * Ticks are aligned on interval boundaries, and all tasks of a tick receive the same timestamp.
+ * @author Joel Takvorian
+ */
+class IntervalReporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IntervalReporter.class);
+    private static final Map<Long, IntervalReporter> SHARED = new ConcurrentHashMap<>();
+
+    private final long interval;
+    private final Collection<LongConsumer> tasks = new CopyOnWriteArrayList<>();
+    private final ReentrantLock tickLock = new ReentrantLock();
+    private ScheduledExecutorService executorService;
+
+    IntervalReporter(long intervalMs) {
+        this.interval = intervalMs;
+    }
+
+    /**
+     * The reporter shared by all clients having this interval
+     */
+    static IntervalReporter shared(long intervalMs) {
+        return SHARED.computeIfAbsent(intervalMs, IntervalReporter::new);
+    }
+
+    long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Register a task that will be run at each interval, with the aligned timestamp of the tick
+     */
+    synchronized void register(LongConsumer task) {
+        tasks.add(task);
+        start();
+    }
+
+    /**
+     * Unregister tasks. A tick that is already running them is given a chance to complete, so that they don't send
+     * partial reports. The reporting thread is stopped when there's no task left.
+     */
+    synchronized void unregister(Collection<LongConsumer> toRemove) {
+        tasks.removeAll(toRemove);
+        if (tasks.isEmpty()) {
+            stop();
+        } else {
+            awaitTick();
+        }
+    }
+
+    private void start() {
+        if (executorService == null) {
+            executorService = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "hawkular-interval-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long now = System.currentTimeMillis();
+            executorService.scheduleAtFixedRate(this::tick, interval - now % interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void stop() {
+        if (executorService != null) {
+            executorService.shutdown();
+            try {
+                if (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+                    executorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            executorService = null;
+        }
+    }
+
+    private void awaitTick() {
+        try {
+            if (tickLock.tryLock(1, TimeUnit.SECONDS)) {
+                tickLock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        long timestamp = now - now % interval;
+        tickLock.lock();
+        try {
+            for (LongConsumer task : tasks) {
+                try {
+                    task.accept(timestamp);
+                } catch (RuntimeException e) {
+                    LOG.warn("Periodic reporting task failed", e);
+                }
+            }
+        } finally {
+            tickLock.unlock();
+        }
+    }
+}
@@ -22,10 +22,15 @@ import java.util.stream.Collectors;
 
 import org.hawkular.metrics.client.model.AvailabilityMetric;
 import org.hawkular.metrics.client.model.Counter;
+import org.hawkular.metrics.client.model.DistinctCounter;
 import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.Histogram;
 import org.hawkular.metrics.client.model.Logger;
+import org.hawkular.metrics.client.model.Meter;
 import org.hawkular.metrics.client.model.Tag;
 import org.hawkular.metrics.client.model.Tags;
+import org.hawkular.metrics.client.model.Timer;
+import org.hawkular.metrics.client.model.TopK;
 import org.hawkular.metrics.client.model.Watch;
 
 /**
@@ -100,6 +105,26 @@ public class MetricBuilder {
         return hawkularClient.watch(buildName(), tags);
     }
 
+    public Timer toTimer() {
+        return hawkularClient.timer(buildName(), tags);
+    }
+
+    public Histogram toHistogram() {
+        return hawkularClient.histogram(buildName(), tags);
+    }
+
+    public Meter toMeter() {
+        return hawkularClient.meter(buildName(), tags);
+    }
+
+    public DistinctCounter toDistinctCounter() {
+        return hawkularClient.distinctCounter(buildName(), tags);
+    }
+
+    public TopK toTopK() {
+        return hawkularClient.topK(buildName(), tags);
+    }
+
     public AvailabilityMetric toAvailability() {
         return hawkularClient.availability(buildName(), tags);
     }
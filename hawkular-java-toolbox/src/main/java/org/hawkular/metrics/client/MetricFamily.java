@@ -0,0 +1,300 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+
+import org.hawkular.metrics.client.model.Metric;
+import org.hawkular.metrics.client.model.Tag;
+import org.hawkular.metrics.client.model.Tags;
+
+/**
+ * A family of metrics sharing the same base name, whose children are distinguished by label values.<br/>
+ * For instance, a family created with {@code hawkular.counterFamily("svc.read", "impl", "source")} resolves
+ * {@code labels("mysql", "cache")} to the counter "svc.read.mysql.cache" tagged with impl:mysql and source:cache,
+ * which is the same as what {@link MetricBuilder} produces with
+ * {@code addSegment("svc.read").addSegment("impl", "mysql").addSegment("source", "cache")}.<br/>
+ * Resolved children are cached in an open-addressing table, so that looking up an existing child doesn't allocate
+ * anything (except for the varargs array of {@link #labels(String...)}). Children evicted from the client are
+ * transparently resolved again, and dropped from the table when it's rebuilt: the table is sized on live children
+ * only, so that it shrinks back when dynamic label values are evicted.
+ * @author Joel Takvorian
+ */
+public class MetricFamily<T extends Metric> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String name;
+    private final String[] labelNames;
+    private final BiFunction<String, Tags, T> resolver;
+    private volatile AtomicReferenceArray<Child<T>> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private int size = 0;
+
+    MetricFamily(String name, String[] labelNames, BiFunction<String, Tags, T> resolver) {
+        this.name = name;
+        this.labelNames = labelNames.clone();
+        this.resolver = resolver;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String[] getLabelNames() {
+        return labelNames.clone();
+    }
+
+    /**
+     * Get the child metric of a family that has a single label
+     * @param value label value
+     */
+    public T labels(String value) {
+        checkArity(1);
+        int hash = spread(31 + value.hashCode());
+        AtomicReferenceArray<Child<T>> tbl = table;
+        int mask = tbl.length() - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Child<T> child = tbl.get(i);
+            if (child == null) {
+                break;
+            }
+            if (child.hash == hash && child.matches(value)) {
+                if (child.metric.isDetached()) {
+                    break;
+                }
+                return child.metric;
+            }
+        }
+        return resolve(hash, new String[] {value});
+    }
+
+    /**
+     * Get the child metric of a family that has two labels
+     * @param value1 first label value
+     * @param value2 second label value
+     */
+    public T labels(String value1, String value2) {
+        checkArity(2);
+        int hash = spread(31 * (31 + value1.hashCode()) + value2.hashCode());
+        AtomicReferenceArray<Child<T>> tbl = table;
+        int mask = tbl.length() - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Child<T> child = tbl.get(i);
+            if (child == null) {
+                break;
+            }
+            if (child.hash == hash && child.matches(value1, value2)) {
+                if (child.metric.isDetached()) {
+                    break;
+                }
+                return child.metric;
+            }
+        }
+        return resolve(hash, new String[] {value1, value2});
+    }
+
+    /**
+     * Get the child metric of a family that has three labels
+     * @param value1 first label value
+     * @param value2 second label value
+     * @param value3 third label value
+     */
+    public T labels(String value1, String value2, String value3) {
+        checkArity(3);
+        int hash = spread(31 * (31 * (31 + value1.hashCode()) + value2.hashCode()) + value3.hashCode());
+        AtomicReferenceArray<Child<T>> tbl = table;
+        int mask = tbl.length() - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Child<T> child = tbl.get(i);
+            if (child == null) {
+                break;
+            }
+            if (child.hash == hash && child.matches(value1, value2, value3)) {
+                if (child.metric.isDetached()) {
+                    break;
+                }
+                return child.metric;
+            }
+        }
+        return resolve(hash, new String[] {value1, value2, value3});
+    }
+
+    /**
+     * Get the child metric for the given label values, in the same order as label names
+     * @param values label values
+     */
+    public T labels(String... values) {
+        checkArity(values.length);
+        int hash = hash(values);
+        AtomicReferenceArray<Child<T>> tbl = table;
+        int mask = tbl.length() - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            Child<T> child = tbl.get(i);
+            if (child == null) {
+                break;
+            }
+            if (child.hash == hash && child.matches(values)) {
+                if (child.metric.isDetached()) {
+                    break;
+                }
+                return child.metric;
+            }
+        }
+        return resolve(hash, values.clone());
+    }
+
+    private synchronized T resolve(int hash, String[] values) {
+        AtomicReferenceArray<Child<T>> tbl = table;
+        int mask = tbl.length() - 1;
+        int i = hash & mask;
+        for (; ; i = (i + 1) & mask) {
+            Child<T> child = tbl.get(i);
+            if (child == null) {
+                break;
+            }
+            if (child.hash == hash && child.matches(values)) {
+                if (!child.metric.isDetached()) {
+                    return child.metric;
+                }
+                // Evicted from the client: replace in place
+                Child<T> fresh = new Child<>(hash, values, create(values));
+                tbl.set(i, fresh);
+                return fresh.metric;
+            }
+        }
+        Child<T> fresh = new Child<>(hash, values, create(values));
+        tbl.set(i, fresh);
+        size++;
+        if (size * 2 > tbl.length()) {
+            table = rebuild(tbl);
+        }
+        return fresh.metric;
+    }
+
+    private T create(String[] values) {
+        StringBuilder sb = new StringBuilder(name);
+        Tags tags = Tags.empty();
+        for (int i = 0; i < values.length; i++) {
+            sb.append('.').append(values[i]);
+            tags.add(Tag.keyValue(labelNames[i], values[i]));
+        }
+        return resolver.apply(sb.toString(), tags);
+    }
+
+    /**
+     * Copy live children to a new table, which is bigger or smaller depending on how many children were detached.
+     * Lookups keep reading the old table until the new one is published.
+     */
+    private AtomicReferenceArray<Child<T>> rebuild(AtomicReferenceArray<Child<T>> tbl) {
+        int live = 0;
+        for (int i = 0; i < tbl.length(); i++) {
+            Child<T> child = tbl.get(i);
+            if (child != null && !child.metric.isDetached()) {
+                live++;
+            }
+        }
+        int capacity = INITIAL_CAPACITY;
+        while (live * 4 > capacity) {
+            capacity *= 2;
+        }
+        AtomicReferenceArray<Child<T>> rebuilt = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < tbl.length(); i++) {
+            Child<T> child = tbl.get(i);
+            if (child != null && !child.metric.isDetached()) {
+                int j = child.hash & mask;
+                while (rebuilt.get(j) != null) {
+                    j = (j + 1) & mask;
+                }
+                rebuilt.set(j, child);
+            }
+        }
+        size = live;
+        return rebuilt;
+    }
+
+    /**
+     * Number of children currently held in the table, including detached ones that weren't dropped yet
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Current capacity of the table
+     */
+    int capacity() {
+        return table.length();
+    }
+
+    private void checkArity(int count) {
+        if (count != labelNames.length) {
+            throw new IllegalArgumentException("Metric family " + name + " expects " + labelNames.length
+                    + " label values, got " + count);
+        }
+    }
+
+    private static int hash(String[] values) {
+        int h = 1;
+        for (String value : values) {
+            h = 31 * h + value.hashCode();
+        }
+        return spread(h);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Child<T extends Metric> {
+        private final int hash;
+        private final String[] values;
+        private final T metric;
+
+        private Child(int hash, String[] values, T metric) {
+            this.hash = hash;
+            this.values = values;
+            this.metric = metric;
+        }
+
+        private boolean matches(String value) {
+            return values.length == 1 && values[0].equals(value);
+        }
+
+        private boolean matches(String value1, String value2) {
+            return values.length == 2 && values[0].equals(value1) && values[1].equals(value2);
+        }
+
+        private boolean matches(String value1, String value2, String value3) {
+            return values.length == 3 && values[0].equals(value1) && values[1].equals(value2)
+                    && values[2].equals(value3);
+        }
+
+        private boolean matches(String[] others) {
+            if (values.length != others.length) {
+                return false;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (!values[i].equals(others[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Allow and deny rules on metric names. They are evaluated only once, when a metric is created: denied metrics are
+ * no-op.<br/>
+ * A rule can be:
+ * <ul>
+ *     <li>an exact metric name, such as "guava.cache.read"</li>
+ *     <li>a prefix, ending with a star, such as "guava.cache.*"</li>
+ *     <li>a regex written between slashes, as for per-metric tags, such as "/guava\.cache\..*&#47;"</li>
+ * </ul>
+ * Rules are matched against the metric name with and without the client prefix.<br/>
+ * When there are allow rules, only metrics that match one of them are accepted. Deny rules always take precedence.<br/>
+ * Metrics published by an accepted metric, such as the percentiles of a histogram, are accepted too: rules apply to
+ * the name given by the caller.
+ * @author Joel Takvorian
+ */
+public class MetricFilter {
+
+    private final Rules allowed = new Rules();
+    private final Rules denied = new Rules();
+
+    void allow(String rule) {
+        allowed.add(rule);
+    }
+
+    void deny(String rule) {
+        denied.add(rule);
+    }
+
+    boolean accept(String name, String fullName) {
+        if (!allowed.isEmpty() && !allowed.matches(name) && !allowed.matches(fullName)) {
+            return false;
+        }
+        return !denied.matches(name) && !denied.matches(fullName);
+    }
+
+    private static class Rules {
+        private final Set<String> exactNames = new HashSet<>();
+        private final List<String> prefixes = new ArrayList<>();
+        private final Collection<Pattern> regexes = new ArrayList<>();
+
+        private void add(String rule) {
+            Optional<Pattern> regex = RegexTags.checkRegex(rule);
+            if (regex.isPresent()) {
+                regexes.add(regex.get());
+            } else if (rule.endsWith("*")) {
+                prefixes.add(rule.substring(0, rule.length() - 1));
+            } else {
+                exactNames.add(rule);
+            }
+        }
+
+        private boolean isEmpty() {
+            return exactNames.isEmpty() && prefixes.isEmpty() && regexes.isEmpty();
+        }
+
+        private boolean matches(String name) {
+            if (exactNames.contains(name)) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            for (Pattern regex : regexes) {
+                if (RegexTags.matches(regex, name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Settings that apply to some metrics only, configured by exact metric name or by regex written between slashes,
+ * as for per-metric tags.<br/>
+ * Like filters, rules are matched against the metric name with and without the client prefix. Exact names take
+ * precedence over regex, then regex are checked in declaration order.
+ * @author Joel Takvorian
+ */
+public class MetricRules<T> {
+
+    private final Map<String, T> exact = new HashMap<>();
+    private final List<Map.Entry<Pattern, T>> regex = new ArrayList<>();
+
+    void add(String metricOrRegex, T value) {
+        Optional<Pattern> pattern = RegexTags.checkRegex(metricOrRegex);
+        if (pattern.isPresent()) {
+            regex.add(new AbstractMap.SimpleImmutableEntry<>(pattern.get(), value));
+        } else {
+            exact.put(metricOrRegex, value);
+        }
+    }
+
+    boolean isEmpty() {
+        return exact.isEmpty() && regex.isEmpty();
+    }
+
+    Optional<T> find(String name, String fullName) {
+        if (isEmpty()) {
+            return Optional.empty();
+        }
+        T value = exact.get(name);
+        if (value == null) {
+            value = exact.get(fullName);
+        }
+        if (value != null) {
+            return Optional.of(value);
+        }
+        for (Map.Entry<Pattern, T> entry : regex) {
+            if (RegexTags.matches(entry.getKey(), name) || RegexTags.matches(entry.getKey(), fullName)) {
+                return Optional.of(entry.getValue());
+            }
+        }
+        return Optional.empty();
+    }
+}
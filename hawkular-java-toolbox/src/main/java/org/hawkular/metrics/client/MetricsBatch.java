@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+
+import org.hawkular.metrics.client.common.http.HawkularHttpClient;
+import org.hawkular.metrics.client.model.DataPoint;
+import org.hawkular.metrics.client.model.Metric;
+
+/**
+ * Collects the datapoints emitted while running some code, instead of sending them one by one, and sends them all in
+ * a single request, stamped with the same timestamp.<br/>
+ * Code can be run in the batch from several threads concurrently, see {@link #run(Runnable)}. Datapoints are only
+ * collected from the threads that are running code in the batch.
+ * @author Joel Takvorian
+ */
+public final class MetricsBatch {
+
+    private final MetricsNotifier notifier;
+    private final HawkularHttpClient httpClient;
+    private final long timestamp;
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+
+    MetricsBatch(MetricsNotifier notifier, HawkularHttpClient httpClient, long timestamp) {
+        this.notifier = notifier;
+        this.httpClient = httpClient;
+        this.timestamp = timestamp;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Run some code, collecting the datapoints it emits from the current thread in this batch
+     */
+    public void run(Runnable runnable) {
+        MetricsBatch previous = notifier.bind(this);
+        try {
+            runnable.run();
+        } finally {
+            notifier.bind(previous);
+        }
+    }
+
+    void add(Metric metric, DataPoint<?> dp) {
+        entries.add(new Entry(metric, dp.withTimestamp(timestamp)));
+    }
+
+    /**
+     * Inspect the datapoints collected so far, before they are sent
+     */
+    public void forEach(BiConsumer<Metric, DataPoint<?>> consumer) {
+        entries.forEach(entry -> consumer.accept(entry.metric, entry.dp));
+    }
+
+    /**
+     * Send all collected datapoints in a single request
+     * @return the number of datapoints sent
+     */
+    public int flush() {
+        List<Metric> metrics = new ArrayList<>();
+        List<DataPoint<?>> dataPoints = new ArrayList<>();
+        drainTo(metrics, dataPoints);
+        if (!metrics.isEmpty()) {
+            httpClient.postMetrics(HawkularJson.metricsToString(metrics, dataPoints));
+        }
+        return metrics.size();
+    }
+
+    /**
+     * Send the datapoints collected by several batches in a single request
+     * @return the number of datapoints sent
+     */
+    static int flushAll(Queue<MetricsBatch> batches) {
+        List<Metric> metrics = new ArrayList<>();
+        List<DataPoint<?>> dataPoints = new ArrayList<>();
+        HawkularHttpClient client = null;
+        MetricsBatch batch;
+        while ((batch = batches.poll()) != null) {
+            client = batch.httpClient;
+            batch.drainTo(metrics, dataPoints);
+        }
+        if (!metrics.isEmpty()) {
+            client.postMetrics(HawkularJson.metricsToString(metrics, dataPoints));
+        }
+        return metrics.size();
+    }
+
+    private void drainTo(List<Metric> metrics, List<DataPoint<?>> dataPoints) {
+        Entry entry;
+        while ((entry = entries.poll()) != null) {
+            metrics.add(entry.metric);
+            dataPoints.add(entry.dp);
+        }
+    }
+
+    private static final class Entry {
+        private final Metric metric;
+        private final DataPoint<?> dp;
+
+        private Entry(Metric metric, DataPoint<?> dp) {
+            this.metric = metric;
+            this.dp = dp;
+        }
+    }
+}
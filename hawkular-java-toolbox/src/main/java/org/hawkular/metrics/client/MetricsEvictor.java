@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+import org.hawkular.metrics.client.model.Metric;
+
+/**
+ * Removes metrics that haven't been updated for a while from the client registry.<br/>
+ * Eviction is incremental: at each tick, only a batch of metrics is checked, sized so that the whole registry is
+ * covered within a TTL period. The registry is never locked.
+ * @author Joel Takvorian
+ */
+class MetricsEvictor {
+
+    private static final int MIN_BATCH_SIZE = 1000;
+
+    private final long ttl;
+    private final long interval;
+    private final List<Map<String, ? extends Metric>> pools;
+    private final BiPredicate<String, Metric> evictable;
+    private final BiConsumer<String, Metric> onEvicted;
+    private int poolIndex = 0;
+    private Iterator<? extends Map.Entry<String, ? extends Metric>> iterator;
+
+    MetricsEvictor(long ttl,
+                   long interval,
+                   List<Map<String, ? extends Metric>> pools,
+                   BiPredicate<String, Metric> evictable,
+                   BiConsumer<String, Metric> onEvicted) {
+        this.ttl = ttl;
+        this.interval = interval;
+        this.pools = pools;
+        this.evictable = evictable;
+        this.onEvicted = onEvicted;
+        this.iterator = pools.get(0).entrySet().iterator();
+    }
+
+    void tick(long timestamp) {
+        long total = pools.stream().mapToLong(Map::size).sum();
+        long batchSize = Math.min(total, Math.max(MIN_BATCH_SIZE, total * interval / ttl + 1));
+        long deadline = System.currentTimeMillis() - ttl;
+        for (long i = 0; i < batchSize; i++) {
+            Map.Entry<String, ? extends Metric> entry = next();
+            if (entry == null) {
+                return;
+            }
+            Metric metric = entry.getValue();
+            if (metric.getLastUpdate() < deadline
+                    && evictable.test(entry.getKey(), metric)
+                    && pools.get(poolIndex).remove(entry.getKey(), metric)) {
+                onEvicted.accept(entry.getKey(), metric);
+            }
+        }
+    }
+
+    private Map.Entry<String, ? extends Metric> next() {
+        // Cycle through all pools; iterators of concurrent maps are weakly consistent so they can be kept across ticks
+        for (int i = 0; i <= pools.size(); i++) {
+            if (iterator.hasNext()) {
+                return iterator.next();
+            }
+            poolIndex = (poolIndex + 1) % pools.size();
+            iterator = pools.get(poolIndex).entrySet().iterator();
+        }
+        return null;
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.hawkular.metrics.client;
 
+import java.util.concurrent.atomic.LongAdder;
+
 import org.hawkular.metrics.client.common.http.HawkularHttpClient;
 import org.hawkular.metrics.client.config.HawkularClientInfo;
 import org.hawkular.metrics.client.model.DataPoint;
@@ -23,20 +25,61 @@ import org.hawkular.metrics.client.model.Metric;
 import org.hawkular.metrics.client.model.MetricChangeListener;
 import org.hawkular.metrics.client.model.Tags;
 
-// TODO: allow batch changes
 public class MetricsNotifier implements MetricChangeListener {
 
     private final HawkularHttpClient hawkularClient;
+    private final CardinalityLimiter cardinalityLimiter;
+    private final LongAdder suppressed = new LongAdder();
+    private final ThreadLocal<MetricsBatch> batches = new ThreadLocal<>();
 
-    MetricsNotifier(HawkularClientInfo config) {
+    MetricsNotifier(HawkularClientInfo config, CardinalityLimiter cardinalityLimiter) {
         this.hawkularClient = config.getHttpClient();
+        this.cardinalityLimiter = cardinalityLimiter;
     }
 
     @Override public void onChanged(Metric metric, DataPoint<?> dp) {
-        hawkularClient.postMetrics(HawkularJson.metricToString(metric, dp));
+        DataPoint<?> limited = cardinalityLimiter.limitTags(metric, dp);
+        if (limited == null) {
+            return;
+        }
+        MetricsBatch batch = batches.get();
+        if (batch != null) {
+            batch.add(metric, limited);
+        } else {
+            hawkularClient.postMetrics(HawkularJson.metricToString(metric, limited));
+        }
+    }
+
+    MetricsBatch batch(long timestamp) {
+        return new MetricsBatch(this, hawkularClient, timestamp);
+    }
+
+    /**
+     * Collect datapoints emitted from the current thread in the given batch, or send them again if null
+     * @return the batch previously bound to the current thread, if any
+     */
+    MetricsBatch bind(MetricsBatch batch) {
+        MetricsBatch previous = batches.get();
+        if (batch == null) {
+            batches.remove();
+        } else {
+            batches.set(batch);
+        }
+        return previous;
     }
 
     @Override public void tag(Metric metric, Tags tags) {
         hawkularClient.putTags(metric.getHawkularType(), metric.getName(), HawkularJson.tagsToString(tags));
     }
+
+    @Override public void onSuppressed(Metric metric) {
+        suppressed.increment();
+    }
+
+    /**
+     * @return the number of values suppressed since the last call
+     */
+    long pollSuppressed() {
+        return suppressed.sumThenReset();
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.hawkular.metrics.client.common.http.HawkularHttpClient;
+import org.hawkular.metrics.client.common.http.HawkularHttpResponse;
+
+/**
+ * Http client used when the toolbox is disabled: it never opens any connection
+ * @author Joel Takvorian
+ */
+final class NoopHttpClient implements HawkularHttpClient {
+
+    static final NoopHttpClient INSTANCE = new NoopHttpClient();
+    private static final HawkularHttpResponse NO_CONTENT = new HawkularHttpResponse("", 204);
+
+    private NoopHttpClient() {
+    }
+
+    @Override public void addHeaders(Map<String, String> headers) {
+    }
+
+    @Override public HawkularHttpResponse postMetrics(String jsonBody) {
+        return NO_CONTENT;
+    }
+
+    @Override public HawkularHttpResponse putTags(String type, String metricName, String jsonBody) {
+        return NO_CONTENT;
+    }
+
+    @Override
+    public void setFailoverOptions(Optional<Long> failoverCacheDuration, Optional<Integer> failoverCacheMaxSize) {
+    }
+
+    @Override public void manageFailover() {
+    }
+}
@@ -36,10 +36,16 @@ public class RegexTags {
     }
 
     static Optional<RegexTags> checkAndCreate(String maybeRegex, Tags tags) {
-        if (maybeRegex.startsWith("/") && maybeRegex.endsWith("/")) {
+        return checkRegex(maybeRegex).map(regex -> new RegexTags(regex, tags));
+    }
+
+    /**
+     * Parse the input string as a regex if it's written between slashes, like "/ehcache\..*&#47;"
+     */
+    static Optional<Pattern> checkRegex(String maybeRegex) {
+        if (maybeRegex.length() > 1 && maybeRegex.startsWith("/") && maybeRegex.endsWith("/")) {
             try {
-                Pattern regex = Pattern.compile(maybeRegex.substring(1, maybeRegex.length() - 1));
-                return Optional.of(new RegexTags(regex, tags));
+                return Optional.of(Pattern.compile(maybeRegex.substring(1, maybeRegex.length() - 1)));
             } catch (PatternSyntaxException e) {
                 return Optional.empty();
             }
@@ -47,8 +53,12 @@ public class RegexTags {
         return Optional.empty();
     }
 
+    static boolean matches(Pattern regex, String metricName) {
+        return regex.matcher(metricName).find();
+    }
+
     Optional<Tags> match(String metricName) {
-        if (regex.matcher(metricName).find()) {
+        if (matches(regex, metricName)) {
             return Optional.of(tags);
         }
         return Optional.empty();
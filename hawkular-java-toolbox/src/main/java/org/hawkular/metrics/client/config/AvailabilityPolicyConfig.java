@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.config;
+
+/**
+ * Availability policy in YAML configuration: only transitions are sent, plus optional keep-alive and watchdog.
+ * Durations are in milliseconds; {@code watchdogState} is "down" or "unknown", "down" by default.
+ * @author Joel Takvorian
+ */
+public class AvailabilityPolicyConfig {
+    private Long keepAlive;
+    private Long watchdogTimeout;
+    private String watchdogState;
+
+    public Long getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public Long getWatchdogTimeout() {
+        return watchdogTimeout;
+    }
+
+    public void setWatchdogTimeout(Long watchdogTimeout) {
+        this.watchdogTimeout = watchdogTimeout;
+    }
+
+    public String getWatchdogState() {
+        return watchdogState;
+    }
+
+    public void setWatchdogState(String watchdogState) {
+        this.watchdogState = watchdogState;
+    }
+}
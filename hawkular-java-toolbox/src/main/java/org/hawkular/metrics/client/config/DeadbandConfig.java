@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.config;
+
+/**
+ * Deadband settings of a gauge in YAML configuration. Either {@code absolute} or {@code relative} can be set, or none
+ * of them to only send changed values. {@code heartbeat} is in milliseconds.
+ * @author Joel Takvorian
+ */
+public class DeadbandConfig {
+    private Double absolute;
+    private Double relative;
+    private Long heartbeat;
+
+    public Double getAbsolute() {
+        return absolute;
+    }
+
+    public void setAbsolute(Double absolute) {
+        this.absolute = absolute;
+    }
+
+    public Double getRelative() {
+        return relative;
+    }
+
+    public void setRelative(Double relative) {
+        this.relative = relative;
+    }
+
+    public Long getHeartbeat() {
+        return heartbeat;
+    }
+
+    public void setHeartbeat(Long heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+}
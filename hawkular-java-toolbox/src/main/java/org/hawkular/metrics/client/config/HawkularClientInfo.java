@@ -20,8 +20,16 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 
+import org.hawkular.metrics.client.MetricFilter;
+import org.hawkular.metrics.client.MetricRules;
 import org.hawkular.metrics.client.RegexTags;
 import org.hawkular.metrics.client.common.http.HawkularHttpClient;
+import org.hawkular.metrics.client.model.AvailabilityPolicy;
+import org.hawkular.metrics.client.model.Deadband;
+import org.hawkular.metrics.client.model.Expression;
+import org.hawkular.metrics.client.model.Rollup;
+import org.hawkular.metrics.client.model.Sampling;
+import org.hawkular.metrics.client.model.TagAggregation;
 import org.hawkular.metrics.client.model.Tags;
 
 /**
@@ -38,6 +46,20 @@ public class HawkularClientInfo {
     private final Tags globalTags;
     private final Map<String, Tags> perMetricTags;
     private final Collection<RegexTags> regexTags;
+    private final MetricFilter metricFilter;
+    private final Optional<Integer> maxMetrics;
+    private final Optional<Integer> maxTagSetsPerMetric;
+    private final boolean dropOverflow;
+    private final long reportInterval;
+    private final Optional<Long> evictionTtl;
+    private final double[] histogramPercentiles;
+    private final MetricRules<Deadband> gaugeDeadbands;
+    private final MetricRules<AvailabilityPolicy> availabilityPolicies;
+    private final MetricRules<Rollup> rollups;
+    private final MetricRules<Sampling> samplingPolicies;
+    private final MetricRules<TagAggregation> tagAggregations;
+    private final Map<String, Expression> derivedMetrics;
+    private final boolean disabled;
 
     public HawkularClientInfo(
             HawkularHttpClient httpClient,
@@ -47,7 +69,21 @@ public class HawkularClientInfo {
             Optional<String> prefix,
             Tags globalTags,
             Map<String, Tags> perMetricTags,
-            Collection<RegexTags> regexTags) {
+            Collection<RegexTags> regexTags,
+            MetricFilter metricFilter,
+            Optional<Integer> maxMetrics,
+            Optional<Integer> maxTagSetsPerMetric,
+            boolean dropOverflow,
+            long reportInterval,
+            Optional<Long> evictionTtl,
+            double[] histogramPercentiles,
+            MetricRules<Deadband> gaugeDeadbands,
+            MetricRules<AvailabilityPolicy> availabilityPolicies,
+            MetricRules<Rollup> rollups,
+            MetricRules<Sampling> samplingPolicies,
+            MetricRules<TagAggregation> tagAggregations,
+            Map<String, Expression> derivedMetrics,
+            boolean disabled) {
         this.httpClient = httpClient;
         this.tenant = tenant;
         this.uri = uri;
@@ -57,6 +93,20 @@ public class HawkularClientInfo {
         this.globalTags = globalTags;
         this.perMetricTags = perMetricTags;
         this.regexTags = regexTags;
+        this.metricFilter = metricFilter;
+        this.maxMetrics = maxMetrics;
+        this.maxTagSetsPerMetric = maxTagSetsPerMetric;
+        this.dropOverflow = dropOverflow;
+        this.reportInterval = reportInterval;
+        this.evictionTtl = evictionTtl;
+        this.histogramPercentiles = histogramPercentiles;
+        this.gaugeDeadbands = gaugeDeadbands;
+        this.availabilityPolicies = availabilityPolicies;
+        this.rollups = rollups;
+        this.samplingPolicies = samplingPolicies;
+        this.tagAggregations = tagAggregations;
+        this.derivedMetrics = derivedMetrics;
+        this.disabled = disabled;
     }
 
     public String getTenant() {
@@ -94,4 +144,90 @@ public class HawkularClientInfo {
     public Collection<RegexTags> getRegexTags() {
         return regexTags;
     }
+
+    public MetricFilter getMetricFilter() {
+        return metricFilter;
+    }
+
+    public Optional<Integer> getMaxMetrics() {
+        return maxMetrics;
+    }
+
+    public Optional<Integer> getMaxTagSetsPerMetric() {
+        return maxTagSetsPerMetric;
+    }
+
+    public boolean isDropOverflow() {
+        return dropOverflow;
+    }
+
+    /**
+     * Interval for periodic reports (self-metrics, and metrics that are reported periodically), in milliseconds
+     */
+    public long getReportInterval() {
+        return reportInterval;
+    }
+
+    /**
+     * Time after which metrics that haven't been updated are removed from the client registry, in milliseconds
+     */
+    public Optional<Long> getEvictionTtl() {
+        return evictionTtl;
+    }
+
+    /**
+     * Percentiles published by histograms, as quantiles between 0 and 1
+     */
+    public double[] getHistogramPercentiles() {
+        return histogramPercentiles;
+    }
+
+    /**
+     * Deadbands of gauges, per metric name or regex
+     */
+    public MetricRules<Deadband> getGaugeDeadbands() {
+        return gaugeDeadbands;
+    }
+
+    /**
+     * Policies of availability metrics, per metric name or regex
+     */
+    public MetricRules<AvailabilityPolicy> getAvailabilityPolicies() {
+        return availabilityPolicies;
+    }
+
+    /**
+     * Rollups of gauges and watches, per metric name or regex
+     */
+    public MetricRules<Rollup> getRollups() {
+        return rollups;
+    }
+
+    /**
+     * Sampling policies of gauges, counters, timers and histograms, per metric name or regex
+     */
+    public MetricRules<Sampling> getSamplingPolicies() {
+        return samplingPolicies;
+    }
+
+    /**
+     * Aggregations of counters and gauges datapoints tags, per metric name or regex
+     */
+    public MetricRules<TagAggregation> getTagAggregations() {
+        return tagAggregations;
+    }
+
+    /**
+     * Derived metrics created with the client, by name
+     */
+    public Map<String, Expression> getDerivedMetrics() {
+        return derivedMetrics;
+    }
+
+    /**
+     * When disabled, the client creates no-op metrics and never sends anything to Hawkular
+     */
+    public boolean isDisabled() {
+        return disabled;
+    }
 }
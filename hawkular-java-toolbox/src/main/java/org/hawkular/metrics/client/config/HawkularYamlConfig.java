@@ -17,6 +17,7 @@
 package org.hawkular.metrics.client.config;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.hawkular.metrics.client.common.HawkularClientConfig;
@@ -37,6 +38,21 @@ public class HawkularYamlConfig implements HawkularClientConfig {
     private Map<String, Map<String, String>> perMetricTags;
     private Integer failOverCacheMaxSize;
     private Long failoverCacheDuration;
+    private boolean disabled;
+    private List<String> allowedMetrics;
+    private List<String> deniedMetrics;
+    private Integer maxMetrics;
+    private Integer maxTagSetsPerMetric;
+    private boolean dropOverflow;
+    private Long reportInterval;
+    private Long evictionTtl;
+    private List<Double> histogramPercentiles;
+    private Map<String, DeadbandConfig> gaugeDeadbands;
+    private Map<String, AvailabilityPolicyConfig> availabilityPolicies;
+    private Map<String, RollupConfig> rollups;
+    private Map<String, SamplingConfig> samplingPolicies;
+    private Map<String, TagAggregationConfig> tagAggregations;
+    private Map<String, String> derivedMetrics;
 
     @Override
     public String getUsername() {
@@ -136,4 +152,124 @@ public class HawkularYamlConfig implements HawkularClientConfig {
     public void setFailoverCacheDuration(Long failoverCacheDuration) {
         this.failoverCacheDuration = failoverCacheDuration;
     }
+
+    public boolean isDisabled() {
+        return disabled;
+    }
+
+    public void setDisabled(boolean disabled) {
+        this.disabled = disabled;
+    }
+
+    public List<String> getAllowedMetrics() {
+        return allowedMetrics;
+    }
+
+    public void setAllowedMetrics(List<String> allowedMetrics) {
+        this.allowedMetrics = allowedMetrics;
+    }
+
+    public List<String> getDeniedMetrics() {
+        return deniedMetrics;
+    }
+
+    public void setDeniedMetrics(List<String> deniedMetrics) {
+        this.deniedMetrics = deniedMetrics;
+    }
+
+    public Integer getMaxMetrics() {
+        return maxMetrics;
+    }
+
+    public void setMaxMetrics(Integer maxMetrics) {
+        this.maxMetrics = maxMetrics;
+    }
+
+    public Integer getMaxTagSetsPerMetric() {
+        return maxTagSetsPerMetric;
+    }
+
+    public void setMaxTagSetsPerMetric(Integer maxTagSetsPerMetric) {
+        this.maxTagSetsPerMetric = maxTagSetsPerMetric;
+    }
+
+    public boolean isDropOverflow() {
+        return dropOverflow;
+    }
+
+    public void setDropOverflow(boolean dropOverflow) {
+        this.dropOverflow = dropOverflow;
+    }
+
+    public Long getReportInterval() {
+        return reportInterval;
+    }
+
+    public void setReportInterval(Long reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+
+    public Long getEvictionTtl() {
+        return evictionTtl;
+    }
+
+    public void setEvictionTtl(Long evictionTtl) {
+        this.evictionTtl = evictionTtl;
+    }
+
+    public List<Double> getHistogramPercentiles() {
+        return histogramPercentiles;
+    }
+
+    public void setHistogramPercentiles(List<Double> histogramPercentiles) {
+        this.histogramPercentiles = histogramPercentiles;
+    }
+
+    public Map<String, DeadbandConfig> getGaugeDeadbands() {
+        return gaugeDeadbands;
+    }
+
+    public void setGaugeDeadbands(Map<String, DeadbandConfig> gaugeDeadbands) {
+        this.gaugeDeadbands = gaugeDeadbands;
+    }
+
+    public Map<String, AvailabilityPolicyConfig> getAvailabilityPolicies() {
+        return availabilityPolicies;
+    }
+
+    public void setAvailabilityPolicies(Map<String, AvailabilityPolicyConfig> availabilityPolicies) {
+        this.availabilityPolicies = availabilityPolicies;
+    }
+
+    public Map<String, RollupConfig> getRollups() {
+        return rollups;
+    }
+
+    public void setRollups(Map<String, RollupConfig> rollups) {
+        this.rollups = rollups;
+    }
+
+    public Map<String, SamplingConfig> getSamplingPolicies() {
+        return samplingPolicies;
+    }
+
+    public void setSamplingPolicies(Map<String, SamplingConfig> samplingPolicies) {
+        this.samplingPolicies = samplingPolicies;
+    }
+
+    public Map<String, TagAggregationConfig> getTagAggregations() {
+        return tagAggregations;
+    }
+
+    public void setTagAggregations(Map<String, TagAggregationConfig> tagAggregations) {
+        this.tagAggregations = tagAggregations;
+    }
+
+    public Map<String, String> getDerivedMetrics() {
+        return derivedMetrics;
+    }
+
+    public void setDerivedMetrics(Map<String, String> derivedMetrics) {
+        this.derivedMetrics = derivedMetrics;
+    }
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.config;
+
+import java.util.List;
+
+/**
+ * Rollup in YAML configuration: {@code stats} among "min", "max", "sum", "count" and "avg".
+ * When {@code derived} is true, each statistic is sent as a derived gauge such as "name.max"; otherwise a single
+ * statistic is expected, sent in place of the metric values.
+ * @author Joel Takvorian
+ */
+public class RollupConfig {
+    private List<String> stats;
+    private boolean derived;
+
+    public List<String> getStats() {
+        return stats;
+    }
+
+    public void setStats(List<String> stats) {
+        this.stats = stats;
+    }
+
+    public boolean isDerived() {
+        return derived;
+    }
+
+    public void setDerived(boolean derived) {
+        this.derived = derived;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.config;
+
+/**
+ * Sampling policy in YAML configuration. One of {@code probability} (between 0 and 1), {@code everyNth} (keep one
+ * point out of n) or {@code maxRate} (maximum points per second) must be set.
+ * @author Joel Takvorian
+ */
+public class SamplingConfig {
+    private Double probability;
+    private Long everyNth;
+    private Double maxRate;
+
+    public Double getProbability() {
+        return probability;
+    }
+
+    public void setProbability(Double probability) {
+        this.probability = probability;
+    }
+
+    public Long getEveryNth() {
+        return everyNth;
+    }
+
+    public void setEveryNth(Long everyNth) {
+        this.everyNth = everyNth;
+    }
+
+    public Double getMaxRate() {
+        return maxRate;
+    }
+
+    public void setMaxRate(Double maxRate) {
+        this.maxRate = maxRate;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.config;
+
+import java.util.List;
+
+/**
+ * Tags aggregation in YAML configuration: {@code dropTags} are removed from datapoints, which are aggregated across
+ * their values. {@code gaugeStat} is among "min", "max", "sum", "count" and "avg", "max" by default.
+ * {@code maxGroups} bounds the number of aggregation groups per metric.
+ * @author Joel Takvorian
+ */
+public class TagAggregationConfig {
+    private List<String> dropTags;
+    private String gaugeStat;
+    private Integer maxGroups;
+
+    public List<String> getDropTags() {
+        return dropTags;
+    }
+
+    public void setDropTags(List<String> dropTags) {
+        this.dropTags = dropTags;
+    }
+
+    public String getGaugeStat() {
+        return gaugeStat;
+    }
+
+    public void setGaugeStat(String gaugeStat) {
+        this.gaugeStat = gaugeStat;
+    }
+
+    public Integer getMaxGroups() {
+        return maxGroups;
+    }
+
+    public void setMaxGroups(Integer maxGroups) {
+        this.maxGroups = maxGroups;
+    }
+}
@@ -16,36 +16,106 @@
  */
 package org.hawkular.metrics.client.model;
 
+import java.util.Optional;
+
 /**
  * @author Joel Takvorian
  */
 public class AvailabilityMetric extends Metric {
 
+    private final AvailabilityPolicy policy;
+    // Only used with a policy, written under this lock
+    private volatile Availability state;
+    private long lastFed = System.currentTimeMillis();
+    private long lastSent;
+
     public AvailabilityMetric(String name, MetricChangeListener listener) {
+        this(name, listener, null);
+    }
+
+    /**
+     * @param policy when not null, only state transitions are sent, plus keep-alive and watchdog transitions
+     *               according to the policy (see {@link #check(long)}). Values with datapoint tags are always sent.
+     *               The watchdog is armed from creation, so that a metric that is never fed switches too.
+     */
+    public AvailabilityMetric(String name, MetricChangeListener listener, AvailabilityPolicy policy) {
         super("availability", name, listener);
+        this.policy = policy;
     }
 
     public void up() {
-        listener.onChanged(this, DataPoint.availDataPoint(System.currentTimeMillis(), Availability.UP));
+        set(Availability.UP);
     }
 
     public void down() {
-        listener.onChanged(this, DataPoint.availDataPoint(System.currentTimeMillis(), Availability.DOWN));
+        set(Availability.DOWN);
     }
 
     public void unknown() {
-        listener.onChanged(this, DataPoint.availDataPoint(System.currentTimeMillis(), Availability.UNKNOWN));
+        set(Availability.UNKNOWN);
+    }
+
+    private void set(Availability availability) {
+        long now = System.currentTimeMillis();
+        if (policy == null) {
+            emit(DataPoint.availDataPoint(now, availability));
+            return;
+        }
+        touch(now);
+        synchronized (this) {
+            lastFed = now;
+            transition(availability, now);
+        }
+    }
+
+    // Guarded by this
+    private void transition(Availability availability, long timestamp) {
+        if (state != availability) {
+            state = availability;
+            lastSent = timestamp;
+            emit(DataPoint.availDataPoint(timestamp, availability));
+        }
+    }
+
+    /**
+     * Apply keep-alive and watchdog of the policy, if any. This is called by the client at each report interval.
+     * @param timestamp the current time
+     */
+    public void check(long timestamp) {
+        if (policy == null) {
+            return;
+        }
+        Optional<Availability> watchdogState = policy.getWatchdogState();
+        synchronized (this) {
+            // Under the same lock as feeds, so that a concurrent feed is never overridden by the watchdog
+            if (policy.getWatchdogTimeout() > 0 && watchdogState.isPresent() && state != watchdogState.get()
+                    && timestamp - lastFed > policy.getWatchdogTimeout()) {
+                transition(watchdogState.get(), timestamp);
+                return;
+            }
+            if (policy.getKeepAlive() > 0 && state != null && timestamp - lastSent >= policy.getKeepAlive()) {
+                lastSent = timestamp;
+                emit(DataPoint.availDataPoint(timestamp, state));
+            }
+        }
+    }
+
+    /**
+     * Current state, when the metric has a policy and was fed at least once
+     */
+    public Optional<Availability> getState() {
+        return Optional.ofNullable(state);
     }
 
     public void up(Tags tags) {
-        listener.onChanged(this, DataPoint.availDataPoint(System.currentTimeMillis(), Availability.UP, tags));
+        emit(DataPoint.availDataPoint(System.currentTimeMillis(), Availability.UP, tags));
     }
 
     public void down(Tags tags) {
-        listener.onChanged(this, DataPoint.availDataPoint(System.currentTimeMillis(), Availability.DOWN, tags));
+        emit(DataPoint.availDataPoint(System.currentTimeMillis(), Availability.DOWN, tags));
     }
 
     public void unknown(Tags tags) {
-        listener.onChanged(this, DataPoint.availDataPoint(System.currentTimeMillis(), Availability.UNKNOWN, tags));
+        emit(DataPoint.availDataPoint(System.currentTimeMillis(), Availability.UNKNOWN, tags));
     }
 }
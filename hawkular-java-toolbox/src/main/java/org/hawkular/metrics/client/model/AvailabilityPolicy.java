@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reporting policy of an {@link AvailabilityMetric}: only transitions are sent, plus an optional keep-alive that
+ * repeats the current state periodically, and an optional watchdog that switches to DOWN or UNKNOWN when the
+ * metric wasn't fed for some time.<br/>
+ * Keep-alive and watchdog are checked at each report interval of the client, so their precision is the report
+ * interval.
+ * @author Joel Takvorian
+ */
+public final class AvailabilityPolicy {
+
+    private final long keepAlive;
+    private final long watchdogTimeout;
+    private final Availability watchdogState;
+
+    private AvailabilityPolicy(long keepAlive, long watchdogTimeout, Availability watchdogState) {
+        this.keepAlive = keepAlive;
+        this.watchdogTimeout = watchdogTimeout;
+        this.watchdogState = watchdogState;
+    }
+
+    /**
+     * Only send state transitions, without keep-alive nor watchdog
+     */
+    public static AvailabilityPolicy transitionsOnly() {
+        return new AvailabilityPolicy(0, 0, null);
+    }
+
+    /**
+     * Repeat the current state when nothing was sent for the given time
+     */
+    public AvailabilityPolicy keepAlive(long duration, TimeUnit unit) {
+        return new AvailabilityPolicy(unit.toMillis(duration), watchdogTimeout, watchdogState);
+    }
+
+    /**
+     * Switch to the given state when the metric wasn't fed for the given time
+     * @param timeout maximum time between two calls to up/down/unknown
+     * @param unit time unit of the timeout
+     * @param state state to switch to, typically DOWN or UNKNOWN
+     */
+    public AvailabilityPolicy watchdog(long timeout, TimeUnit unit, Availability state) {
+        return new AvailabilityPolicy(keepAlive, unit.toMillis(timeout), state);
+    }
+
+    /**
+     * Keep-alive period in milliseconds, or 0 when disabled
+     */
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Watchdog timeout in milliseconds, or 0 when disabled
+     */
+    public long getWatchdogTimeout() {
+        return watchdogTimeout;
+    }
+
+    public Optional<Availability> getWatchdogState() {
+        return Optional.ofNullable(watchdogState);
+    }
+}
@@ -17,28 +17,83 @@
 package org.hawkular.metrics.client.model;
 
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 
 /**
  * @author Joel Takvorian
  */
 public class Counter extends Metric {
-    private LongAdder count = new LongAdder();
+    private final LongAdder count = new LongAdder();
+    private final Sampling.Sampler sampler;
+    private final TagAggregation.CounterAggregator aggregator;
 
     public Counter(String name, MetricChangeListener listener) {
+        this(name, listener, null, null);
+    }
+
+    /**
+     * @param sampling when not null, only sampled increments send the counter value. The count itself remains exact.
+     * @param aggregation when not null, increments with datapoint tags are counted per remaining tags, once the
+     *                    dropped tags are removed, and only sent at each {@link #flush}
+     */
+    public Counter(String name, MetricChangeListener listener, Sampling sampling, TagAggregation aggregation) {
         super("counters", name, listener);
+        this.sampler = sampling == null ? null : sampling.sampler();
+        this.aggregator = aggregation == null ? null : aggregation.counterAggregator();
     }
 
     public void inc() {
         count.increment();
-        listener.onChanged(this, DataPoint.longDataPoint(System.currentTimeMillis(), count.longValue()));
+        if (sampler != null && !sampler.sample()) {
+            touch();
+            return;
+        }
+        emit(DataPoint.longDataPoint(System.currentTimeMillis(), count.longValue()));
     }
 
     public void inc(Tags tags) {
         count.increment();
-        listener.onChanged(this, DataPoint.longDataPoint(System.currentTimeMillis(), count.longValue(), tags));
+        if (aggregator != null) {
+            aggregator.increment(tags);
+            touch();
+            return;
+        }
+        if (sampler != null && !sampler.sample()) {
+            touch();
+            return;
+        }
+        emit(DataPoint.longDataPoint(System.currentTimeMillis(), count.longValue(), tags));
+    }
+
+    public void inc(long n) {
+        count.add(n);
+        if (sampler != null && !sampler.sample()) {
+            touch();
+            return;
+        }
+        emit(DataPoint.longDataPoint(System.currentTimeMillis(), count.longValue()));
+    }
+
+    /**
+     * Add to the count and send it with the given timestamp, for counters published at each report interval
+     */
+    void add(long timestamp, long n) {
+        count.add(n);
+        emit(DataPoint.longDataPoint(timestamp, count.longValue()));
     }
 
     public Long getCount() {
         return count.longValue();
     }
+
+    /**
+     * Send the tags aggregates that changed during the elapsed interval, if any
+     * @param timestamp aligned timestamp of the interval
+     * @param outputs resolves the counter of each aggregation group, from a name suffix and tags
+     */
+    public void flush(long timestamp, BiFunction<String, Tags, Counter> outputs) {
+        if (aggregator != null) {
+            aggregator.flush(timestamp, outputs);
+        }
+    }
 }
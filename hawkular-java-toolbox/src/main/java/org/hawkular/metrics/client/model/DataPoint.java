@@ -56,6 +56,20 @@ public class DataPoint<T> {
         return dpTags;
     }
 
+    /**
+     * Copy of this datapoint with different datapoint tags
+     */
+    public DataPoint<T> withDpTags(Tags dpTags) {
+        return new DataPoint<>(timestamp, data, dpTags, valueAdder);
+    }
+
+    /**
+     * Copy of this datapoint with a different timestamp
+     */
+    public DataPoint<T> withTimestamp(long timestamp) {
+        return new DataPoint<>(timestamp, data, dpTags, valueAdder);
+    }
+
     public JsonObject toJson() {
         JsonObjectBuilder builder = Json.createObjectBuilder()
                 .add("timestamp", timestamp);
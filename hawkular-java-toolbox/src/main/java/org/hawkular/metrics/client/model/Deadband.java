@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+/**
+ * Deadband of a {@link Gauge}: a new value is only sent if it moved beyond the band around the last sent value, or
+ * if the heartbeat expired since the last sent value.
+ * @author Joel Takvorian
+ */
+public final class Deadband {
+
+    private final double absolute;
+    private final double relative;
+    private final long heartbeat;
+
+    private Deadband(double absolute, double relative, long heartbeat) {
+        this.absolute = absolute;
+        this.relative = relative;
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * Only send values that differ by more than {@code delta} from the last sent value
+     * @param delta absolute threshold
+     * @param heartbeat maximum time between two sent values, in milliseconds, or 0 for no heartbeat
+     */
+    public static Deadband absolute(double delta, long heartbeat) {
+        return new Deadband(delta, 0, heartbeat);
+    }
+
+    /**
+     * Only send values that differ by more than {@code ratio} times the last sent value (e.g. 0.05 for 5%)
+     * @param ratio relative threshold
+     * @param heartbeat maximum time between two sent values, in milliseconds, or 0 for no heartbeat
+     */
+    public static Deadband relative(double ratio, long heartbeat) {
+        return new Deadband(0, ratio, heartbeat);
+    }
+
+    /**
+     * Only send values that changed, or when the heartbeat expired
+     * @param heartbeat maximum time between two sent values, in milliseconds, or 0 for no heartbeat
+     */
+    public static Deadband changeOnly(long heartbeat) {
+        return new Deadband(0, 0, heartbeat);
+    }
+
+    boolean accept(double lastValue, long lastTime, double value, long now) {
+        if (heartbeat > 0 && now - lastTime >= heartbeat) {
+            return true;
+        }
+        double delta = Math.abs(value - lastValue);
+        if (Double.isNaN(delta)) {
+            return !(Double.isNaN(value) && Double.isNaN(lastValue));
+        }
+        return delta > Math.max(absolute, relative * Math.abs(lastValue));
+    }
+
+    public double getAbsolute() {
+        return absolute;
+    }
+
+    public double getRelative() {
+        return relative;
+    }
+
+    public long getHeartbeat() {
+        return heartbeat;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Gauge computed from other metrics at each report interval, such as a ratio of counters.
+ * All the metrics used in the expression are read once per report, then the expression is evaluated on this snapshot.
+ * Nothing is sent when the result is not a finite number, e.g. on a division by zero or when a metric doesn't
+ * exist yet.
+ * @author Joel Takvorian
+ */
+public class DerivedMetric extends Metric implements Reportable {
+
+    private final Expression expression;
+    private final ToDoubleFunction<String> values;
+    private final BiFunction<String, Tags, Gauge> gauges;
+    // Only accessed from the reporting thread
+    private final double[] snapshot;
+    private Gauge output;
+
+    /**
+     * @param name the derived metric name
+     * @param expression the expression computing the value
+     * @param values current value of a metric used in the expression, from its name, or NaN if unknown
+     * @param gauges resolves the output gauge, from a name suffix and tags
+     */
+    public DerivedMetric(String name, Expression expression, ToDoubleFunction<String> values,
+                         BiFunction<String, Tags, Gauge> gauges) {
+        super("gauges", name, NoopMetrics.LISTENER);
+        this.expression = expression;
+        this.values = values;
+        this.gauges = gauges;
+        this.snapshot = new double[expression.getVariables().size()];
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    @Override public void report(long timestamp) {
+        List<String> variables = expression.getVariables();
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = values.applyAsDouble(variables.get(i));
+        }
+        double value = expression.evaluate(snapshot);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if (output == null || output.isDetached()) {
+            output = gauges.apply("", Tags.empty());
+        }
+        output.emit(DataPoint.doubleDataPoint(timestamp, value));
+        touch(timestamp);
+    }
+}
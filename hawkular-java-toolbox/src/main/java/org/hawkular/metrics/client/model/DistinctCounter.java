@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BiFunction;
+
+/**
+ * Estimates the number of distinct values (users, sessions, keys...) seen during each report interval, without
+ * keeping the values themselves.<br/>
+ * It is backed by a HyperLogLog sketch of 2^precision registers, so memory is fixed whatever the number of values,
+ * and the standard error of the estimate is about 1.04 / sqrt(2^precision): 1.6% for the default precision of 12,
+ * which takes 4KB. Offering a value is thread-safe and doesn't allocate nor lock.<br/>
+ * At each report interval, the estimate is published as a gauge with the same name as the distinct counter, and the
+ * sketch is reset.
+ * @author Joel Takvorian
+ */
+public class DistinctCounter extends Metric implements Reportable {
+
+    public static final int DEFAULT_PRECISION = 12;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final int registers;
+    private final double alphaMM;
+    // 4 registers of 8 bits packed per int
+    private final AtomicIntegerArray sketch;
+    private final BiFunction<String, Tags, Gauge> gauges;
+    // Only accessed from the reporting thread
+    private Gauge output;
+
+    /**
+     * @param name the distinct counter name
+     * @param precision number of bits used to index registers, between {@link #MIN_PRECISION} and
+     *                  {@link #MAX_PRECISION}
+     * @param gauges resolves the output gauge, from a name suffix and tags
+     */
+    public DistinctCounter(String name, int precision, BiFunction<String, Tags, Gauge> gauges) {
+        super("gauges", name, NoopMetrics.LISTENER);
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Invalid precision: " + precision + ", must be between "
+                    + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registers = 1 << precision;
+        this.sketch = new AtomicIntegerArray(registers / 4);
+        this.gauges = gauges;
+        double alpha;
+        switch (registers) {
+            case 16:
+                alpha = 0.673;
+                break;
+            case 32:
+                alpha = 0.697;
+                break;
+            case 64:
+                alpha = 0.709;
+                break;
+            default:
+                alpha = 0.7213 / (1 + 1.079 / registers);
+        }
+        this.alphaMM = alpha * registers * registers;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Offer a value
+     */
+    public void offer(long value) {
+        offerHash(mix(value));
+    }
+
+    /**
+     * Offer a value. The hash is computed on the string characters, without allocating
+     */
+    public void offer(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        offerHash(mix(hash));
+    }
+
+    /**
+     * Offer a value, using its {@link Object#hashCode()}. Prefer the other methods for strings and numbers, as 32 bits
+     * hash codes degrade the estimate of very high cardinalities
+     */
+    public void offer(Object value) {
+        offerHash(mix(value.hashCode()));
+    }
+
+    private void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        int slot = index >>> 2;
+        int shift = (index & 3) << 3;
+        int packed = sketch.get(slot);
+        while (((packed >>> shift) & 0xff) < rank) {
+            int updated = (packed & ~(0xff << shift)) | (rank << shift);
+            if (sketch.compareAndSet(slot, packed, updated)) {
+                return;
+            }
+            packed = sketch.get(slot);
+        }
+    }
+
+    @Override public void report(long timestamp) {
+        double sum = 0;
+        int zeros = 0;
+        for (int slot = 0; slot < sketch.length(); slot++) {
+            int packed = sketch.get(slot) == 0 ? 0 : sketch.getAndSet(slot, 0);
+            for (int shift = 0; shift < 32; shift += 8) {
+                int register = (packed >>> shift) & 0xff;
+                sum += 1d / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        }
+        double estimate = alphaMM / sum;
+        if (estimate <= 2.5 * registers && zeros > 0) {
+            // Small range correction: linear counting
+            estimate = registers * Math.log((double) registers / zeros);
+        }
+        if (output == null || output.isDetached()) {
+            output = gauges.apply("", Tags.empty());
+        }
+        output.emit(DataPoint.doubleDataPoint(timestamp, Math.round(estimate)));
+        if (zeros < registers) {
+            touch(timestamp);
+        }
+    }
+
+    /**
+     * Finalization step of MurmurHash3, to spread input bits over the whole hash
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
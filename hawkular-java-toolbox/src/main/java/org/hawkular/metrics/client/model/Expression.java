@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Arithmetic expression over metric names, such as {@code cache.hit / (cache.hit + cache.miss)}.<br/>
+ * Supported: numbers, metric names, {@code + - * /}, unary minus and parentheses. Numbers are digits, with an optional
+ * decimal part and exponent (e.g. {@code 100}, {@code 0.5}, {@code 1e-3}). Metric names are runs of letters, digits,
+ * '_' and '.' that are not numbers, such as {@code NaN} or {@code 5xx.errors}; other characters can be used in names by
+ * quoting them with backquotes.
+ * <br/>
+ * Expressions are parsed once, and compiled to a tree of nodes where metric names are resolved to indexes of a values
+ * array, so that evaluation neither parses nor looks up anything.
+ * @author Joel Takvorian
+ */
+public final class Expression {
+
+    private final String source;
+    private final List<String> variables;
+    private final Node root;
+
+    private Expression(String source, List<String> variables, Node root) {
+        this.source = source;
+        this.variables = variables;
+        this.root = root;
+    }
+
+    /**
+     * Parse an expression
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static Expression parse(String source) {
+        Parser parser = new Parser(source);
+        Node root = parser.expression();
+        parser.skipSpaces();
+        if (parser.pos < source.length()) {
+            throw parser.error("unexpected '" + source.charAt(parser.pos) + "'");
+        }
+        return new Expression(source, Collections.unmodifiableList(parser.variables), root);
+    }
+
+    /**
+     * Metric names used in this expression, in the order of the values expected by {@link #evaluate(double[])}
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @param values values of the {@link #getVariables() variables}, in the same order
+     */
+    public double evaluate(double[] values) {
+        return root.eval(values);
+    }
+
+    @Override public String toString() {
+        return source;
+    }
+
+    @FunctionalInterface
+    private interface Node {
+        double eval(double[] values);
+    }
+
+    /**
+     * Recursive descent parser:
+     * <pre>
+     *     expression := term (('+' | '-') term)*
+     *     term       := factor (('*' | '/') factor)*
+     *     factor     := '-' factor | '(' expression ')' | number | name
+     * </pre>
+     */
+    private static final class Parser {
+        private static final Pattern NUMBER = Pattern.compile("[0-9]+(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+        private static final Pattern EXPONENT_START = Pattern.compile("[0-9]+(\\.[0-9]+)?[eE]");
+
+        private final String source;
+        private final List<String> variables = new ArrayList<>();
+        private int pos;
+
+        private Parser(String source) {
+            this.source = source;
+        }
+
+        private Node expression() {
+            Node node = term();
+            while (true) {
+                Node left = node;
+                if (accept('+')) {
+                    Node right = term();
+                    node = v -> left.eval(v) + right.eval(v);
+                } else if (accept('-')) {
+                    Node right = term();
+                    node = v -> left.eval(v) - right.eval(v);
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node term() {
+            Node node = factor();
+            while (true) {
+                Node left = node;
+                if (accept('*')) {
+                    Node right = factor();
+                    node = v -> left.eval(v) * right.eval(v);
+                } else if (accept('/')) {
+                    Node right = factor();
+                    node = v -> left.eval(v) / right.eval(v);
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node factor() {
+            if (accept('-')) {
+                Node operand = factor();
+                return v -> -operand.eval(v);
+            }
+            if (accept('(')) {
+                Node node = expression();
+                if (!accept(')')) {
+                    throw error("missing ')'");
+                }
+                return node;
+            }
+            if (accept('`')) {
+                int end = source.indexOf('`', pos);
+                if (end < 0) {
+                    throw error("missing '`'");
+                }
+                String name = source.substring(pos, end);
+                pos = end + 1;
+                return variable(name);
+            }
+            skipSpaces();
+            int start = pos;
+            while (pos < source.length() && isNameChar(source.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error(pos < source.length() ? "unexpected '" + source.charAt(pos) + "'" : "unexpected end");
+            }
+            // Signed exponent, such as 1e-3: the sign is not a name char
+            if (pos + 1 < source.length() && (source.charAt(pos) == '-' || source.charAt(pos) == '+')
+                    && Character.isDigit(source.charAt(pos + 1))
+                    && EXPONENT_START.matcher(source.substring(start, pos)).matches()) {
+                pos++;
+                while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                    pos++;
+                }
+            }
+            String token = source.substring(start, pos);
+            if (NUMBER.matcher(token).matches()) {
+                double constant = Double.parseDouble(token);
+                return v -> constant;
+            }
+            return variable(token);
+        }
+
+        private Node variable(String name) {
+            int index = variables.indexOf(name);
+            if (index < 0) {
+                index = variables.size();
+                variables.add(name);
+            }
+            int i = index;
+            return v -> v[i];
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if (pos < source.length() && source.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid expression '" + source + "' at " + pos + ": " + message);
+        }
+    }
+}
@@ -16,20 +16,124 @@
  */
 package org.hawkular.metrics.client.model;
 
+import java.util.function.BiFunction;
+
 /**
  * @author Joel Takvorian
  */
 public class Gauge extends Metric {
 
+    private final Deadband deadband;
+    private final Rollup.Accumulator rollup;
+    private final Sampling.Sampler sampler;
+    private final TagAggregation.GaugeAggregator aggregator;
+    private volatile double value = Double.NaN;
+    // Guarded by this, only used with a deadband
+    private boolean sent;
+    private double lastValue;
+    private long lastTime;
+
     public Gauge(String name, MetricChangeListener listener) {
+        this(name, listener, null);
+    }
+
+    /**
+     * @param deadband when not null, values that are within the deadband of the last sent value are not sent.
+     *                 Values with datapoint tags are always sent.
+     */
+    public Gauge(String name, MetricChangeListener listener, Deadband deadband) {
+        this(name, listener, deadband, null);
+    }
+
+    /**
+     * @param deadband when not null, values that are within the deadband of the last sent value are not sent.
+     *                 Values with datapoint tags are always sent.
+     * @param rollup when not null, values are accumulated and only sent as a summary at each {@link #flush}. It takes
+     *               precedence over the deadband. Values with datapoint tags are always sent.
+     */
+    public Gauge(String name, MetricChangeListener listener, Deadband deadband, Rollup rollup) {
+        this(name, listener, deadband, rollup, null, null);
+    }
+
+    /**
+     * @param deadband when not null, values that are within the deadband of the last sent value are not sent.
+     *                 Values with datapoint tags are always sent.
+     * @param rollup when not null, values are accumulated and only sent as a summary at each {@link #flush}. It takes
+     *               precedence over the deadband. Values with datapoint tags are always sent.
+     * @param sampling when not null, values are sampled before anything else
+     * @param aggregation when not null, values with datapoint tags are aggregated across the dropped tags, and only
+     *                    sent at each {@link #flush}
+     */
+    public Gauge(String name, MetricChangeListener listener, Deadband deadband, Rollup rollup, Sampling sampling,
+                 TagAggregation aggregation) {
         super("gauges", name, listener);
+        this.deadband = deadband;
+        this.rollup = rollup == null ? null : rollup.accumulator();
+        this.sampler = sampling == null ? null : sampling.sampler();
+        this.aggregator = aggregation == null ? null : aggregation.gaugeAggregator();
     }
 
     public void set(double value) {
-        listener.onChanged(this, DataPoint.doubleDataPoint(System.currentTimeMillis(), value));
+        this.value = value;
+        if (sampler != null && !sampler.sample()) {
+            touch();
+            return;
+        }
+        if (rollup != null) {
+            rollup.record(value);
+            touch();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (deadband != null && !pass(value, now)) {
+            touch(now);
+            listener.onSuppressed(this);
+            return;
+        }
+        emit(DataPoint.doubleDataPoint(now, value));
+    }
+
+    private synchronized boolean pass(double value, long now) {
+        if (sent && !deadband.accept(lastValue, lastTime, value, now)) {
+            return false;
+        }
+        sent = true;
+        lastValue = value;
+        lastTime = now;
+        return true;
+    }
+
+    /**
+     * Last value set without datapoint tags, whether it was sent or not, or NaN if none
+     */
+    public double getValue() {
+        return value;
     }
 
     public void set(double value, Tags tags) {
-        listener.onChanged(this, DataPoint.doubleDataPoint(System.currentTimeMillis(), value, tags));
+        if (sampler != null && !sampler.sample()) {
+            touch();
+            return;
+        }
+        if (aggregator != null) {
+            aggregator.record(tags, value);
+            touch();
+            return;
+        }
+        emit(DataPoint.doubleDataPoint(System.currentTimeMillis(), value, tags));
+    }
+
+    /**
+     * Send the rollup summary and the tags aggregates of the elapsed interval, if any
+     * @param timestamp aligned timestamp of the interval
+     * @param outputs resolves derived gauges from a name suffix, such as ".max", and tags
+     */
+    public void flush(long timestamp, BiFunction<String, Tags, Gauge> outputs) {
+        if (rollup != null) {
+            rollup.flush(this, timestamp, suffix -> outputs.apply(suffix, Tags.empty()));
+        }
+        if (aggregator != null) {
+            aggregator.flush(timestamp, outputs);
+        }
     }
 }
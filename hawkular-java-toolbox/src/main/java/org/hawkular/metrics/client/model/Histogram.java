@@ -0,0 +1,225 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+
+/**
+ * Distribution of non-negative long values (latencies, sizes...), aggregated client-side.<br/>
+ * At each report interval, the histogram publishes the count, min, max and mean of the values recorded during the
+ * interval, and the configured percentiles, as gauges named after the histogram with a suffix: "name.count",
+ * "name.min", "name.max", "name.mean" and "name.p50", "name.p99", "name.p999" etc. Percentile gauges are tagged with
+ * their quantile. Nothing is published for intervals without any recorded value.<br/>
+ * Values are counted in log-linear buckets: exact up to 32, then 32 buckets per power of two, hence a relative error
+ * of about 3% on percentiles, and a fixed memory footprint. Recording doesn't allocate and is lock-free.<br/>
+ * A histogram starts with a single stripe of buckets; when concurrent recording contends on it, more stripes are
+ * allocated, and threads are spread over them. There are at most as many stripes as available processors (rounded
+ * down to a power of two, 16 at most). Each stripe takes about 15KB, plus 15KB for the report snapshot: about 30KB per
+ * histogram that is not contended, up to 255KB for a histogram recorded concurrently on 16 processors.
+ * @author Joel Takvorian
+ */
+public class Histogram extends Metric implements Reportable {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+    private static final int SUM = BUCKETS;
+    private static final int MIN = BUCKETS + 1;
+    private static final int MAX = BUCKETS + 2;
+    private static final int STRIPES = stripes();
+    private static final String[] STATS = {".count", ".min", ".max", ".mean"};
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+    // Number of stripes in use, a power of two
+    private volatile int activeStripes = 1;
+    private final double[] percentiles;
+    private final BiFunction<String, Tags, Gauge> gauges;
+    private final Sampling.Sampler sampler;
+    // Only accessed from the reporting thread
+    private final long[] snapshot = new long[BUCKETS];
+    private final Gauge[] outputs;
+
+    /**
+     * @param name the histogram name
+     * @param percentiles percentiles to publish, as quantiles between 0 and 1 (e.g. 0.99)
+     * @param gauges resolves the output gauges, from a name suffix and tags
+     */
+    public Histogram(String name, double[] percentiles, BiFunction<String, Tags, Gauge> gauges) {
+        this(name, percentiles, gauges, null);
+    }
+
+    /**
+     * @param name the histogram name
+     * @param percentiles percentiles to publish, as quantiles between 0 and 1 (e.g. 0.99)
+     * @param gauges resolves the output gauges, from a name suffix and tags
+     * @param sampling when not null, only sampled values are recorded
+     */
+    public Histogram(String name, double[] percentiles, BiFunction<String, Tags, Gauge> gauges, Sampling sampling) {
+        super("gauges", name, NoopMetrics.LISTENER);
+        this.percentiles = percentiles.clone();
+        this.gauges = gauges;
+        this.sampler = sampling == null ? null : sampling.sampler();
+        this.outputs = new Gauge[STATS.length + percentiles.length];
+    }
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     * @param value the value
+     */
+    public void record(long value) {
+        if (sampler != null && !sampler.sample()) {
+            touch();
+            return;
+        }
+        long v = Math.max(0, value);
+        AtomicLongArray stripe = stripe();
+        int bucket = bucketIndex(v);
+        long c = stripe.get(bucket);
+        if (!stripe.compareAndSet(bucket, c, c + 1)) {
+            contended();
+            stripe.incrementAndGet(bucket);
+        }
+        stripe.addAndGet(SUM, v);
+        long min = stripe.get(MIN);
+        while (v < min && !stripe.compareAndSet(MIN, min, v)) {
+            min = stripe.get(MIN);
+        }
+        long max = stripe.get(MAX);
+        while (v > max && !stripe.compareAndSet(MAX, max, v)) {
+            max = stripe.get(MAX);
+        }
+    }
+
+    @Override public void report(long timestamp) {
+        long count = 0;
+        long sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                if (stripe.get(i) != 0) {
+                    long c = stripe.getAndSet(i, 0);
+                    snapshot[i] += c;
+                    count += c;
+                }
+            }
+            sum += stripe.getAndSet(SUM, 0);
+            min = Math.min(min, stripe.getAndSet(MIN, Long.MAX_VALUE));
+            max = Math.max(max, stripe.getAndSet(MAX, 0));
+        }
+        if (count == 0) {
+            return;
+        }
+        // Values recorded concurrently with the reset may have been counted in buckets but not in min/max
+        min = Math.min(min, max);
+        publish(0, timestamp, count);
+        publish(1, timestamp, min);
+        publish(2, timestamp, max);
+        publish(3, timestamp, (double) sum / count);
+        for (int p = 0; p < percentiles.length; p++) {
+            publish(STATS.length + p, timestamp, percentile(percentiles[p], count, min, max));
+        }
+        Arrays.fill(snapshot, 0);
+        touch(timestamp);
+    }
+
+    private double percentile(double quantile, long count, long min, long max) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long cumulated = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulated += snapshot[i];
+            if (cumulated >= rank) {
+                return Math.max(min, Math.min(max, representative(i)));
+            }
+        }
+        return max;
+    }
+
+    private void publish(int output, long timestamp, double value) {
+        Gauge gauge = outputs[output];
+        if (gauge == null || gauge.isDetached()) {
+            gauge = output < STATS.length
+                    ? gauges.apply(STATS[output], Tags.empty())
+                    : gauges.apply(".p" + percentileSuffix(percentiles[output - STATS.length]),
+                            Tags.singleton("quantile", BigDecimal.valueOf(percentiles[output - STATS.length])
+                                    .stripTrailingZeros().toPlainString()));
+            outputs[output] = gauge;
+        }
+        gauge.emit(DataPoint.doubleDataPoint(timestamp, value));
+    }
+
+    private void contended() {
+        int active = activeStripes;
+        if (active < STRIPES) {
+            synchronized (stripes) {
+                if (activeStripes == active) {
+                    activeStripes = active << 1;
+                }
+            }
+        }
+    }
+
+    private AtomicLongArray stripe() {
+        int index = (int) Thread.currentThread().getId() & (activeStripes - 1);
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            AtomicLongArray created = new AtomicLongArray(BUCKETS + 3);
+            created.set(MIN, Long.MAX_VALUE);
+            if (stripes.compareAndSet(index, null, created)) {
+                return created;
+            }
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+    }
+
+    static double representative(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        long lower = (long) (SUB_COUNT + (index & (SUB_COUNT - 1))) << shift;
+        return lower + ((1L << shift) - 1) / 2.0;
+    }
+
+    /**
+     * Suffix of a percentile gauge: 0.5 gives "50", 0.99 gives "99", 0.999 gives "999"
+     */
+    static String percentileSuffix(double quantile) {
+        return BigDecimal.valueOf(quantile).movePointRight(2).stripTrailingZeros().toPlainString().replace(".", "");
+    }
+
+    private static int stripes() {
+        return Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+    }
+}
@@ -26,10 +26,10 @@ public class Logger extends Metric {
     }
 
     public void log(String value) {
-        listener.onChanged(this, DataPoint.stringDataPoint(System.currentTimeMillis(), value));
+        emit(DataPoint.stringDataPoint(System.currentTimeMillis(), value));
     }
 
     public void log(String value, Tags tags) {
-        listener.onChanged(this, DataPoint.stringDataPoint(System.currentTimeMillis(), value, tags));
+        emit(DataPoint.stringDataPoint(System.currentTimeMillis(), value, tags));
     }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Rate of events, aggregated client-side.<br/>
+ * Marking an event only increments a striped adder. At each report interval, the meter publishes, as gauges named
+ * after the meter with a suffix:
+ * <ul>
+ *     <li>"name.count": number of events during the interval</li>
+ *     <li>"name.rate.1m", "name.rate.5m", "name.rate.15m": exponentially weighted moving averages of the rate, in
+ *     events per second, tagged with their window</li>
+ *     <li>if the meter has a sliding window, "name.window.count" and "name.window.rate": exact number of events and
+ *     rate over the window, kept in a ring of report intervals</li>
+ * </ul>
+ * @author Joel Takvorian
+ */
+public class Meter extends Metric implements Reportable {
+
+    private static final String[] EWMA_NAMES = {"1m", "5m", "15m"};
+    private static final double[] EWMA_MINUTES = {1, 5, 15};
+    private static final int COUNT = 0;
+    private static final int EWMA = 1;
+    private static final int WINDOW_COUNT = EWMA + EWMA_NAMES.length;
+    private static final int WINDOW_RATE = WINDOW_COUNT + 1;
+
+    private final LongAdder count = new LongAdder();
+    private final long interval;
+    private final BiFunction<String, Tags, Gauge> gauges;
+    private final String windowName;
+    // Only accessed from the reporting thread
+    private final double[] rates = new double[EWMA_NAMES.length];
+    private final long[] ring;
+    private final Gauge[] outputs;
+    private long lastReport;
+    private int ringIndex;
+    private int ringFilled;
+
+    /**
+     * @param name the meter name
+     * @param interval report interval, in milliseconds
+     * @param window duration of the exact sliding window, in milliseconds, or 0 for no window. It is rounded up to a
+     *               multiple of the report interval
+     * @param gauges resolves the output gauges, from a name suffix and tags
+     */
+    public Meter(String name, long interval, long window, BiFunction<String, Tags, Gauge> gauges) {
+        super("gauges", name, NoopMetrics.LISTENER);
+        this.interval = interval;
+        this.gauges = gauges;
+        if (window > 0) {
+            ring = new long[(int) ((window + interval - 1) / interval)];
+            windowName = TimeUnit.MILLISECONDS.toSeconds(ring.length * interval) + "s";
+        } else {
+            ring = new long[0];
+            windowName = null;
+        }
+        outputs = new Gauge[WINDOW_RATE + 1];
+    }
+
+    /**
+     * Mark the occurrence of an event
+     */
+    public void mark() {
+        count.increment();
+    }
+
+    /**
+     * Mark the occurrence of {@code n} events
+     */
+    public void mark(long n) {
+        count.add(n);
+    }
+
+    @Override public void report(long timestamp) {
+        long events = count.sumThenReset();
+        long elapsed = lastReport == 0 ? interval : Math.max(1, timestamp - lastReport);
+        double instantRate = events * 1000d / elapsed;
+        for (int i = 0; i < rates.length; i++) {
+            if (lastReport == 0) {
+                rates[i] = instantRate;
+            } else {
+                double alpha = 1 - Math.exp(-elapsed / (EWMA_MINUTES[i] * 60_000));
+                rates[i] += alpha * (instantRate - rates[i]);
+            }
+        }
+        lastReport = timestamp;
+        publish(COUNT, ".count", null, timestamp, events);
+        for (int i = 0; i < rates.length; i++) {
+            publish(EWMA + i, ".rate." + EWMA_NAMES[i], EWMA_NAMES[i], timestamp, rates[i]);
+        }
+        if (ring.length > 0) {
+            ring[ringIndex] = events;
+            ringIndex = (ringIndex + 1) % ring.length;
+            ringFilled = Math.min(ring.length, ringFilled + 1);
+            long windowCount = 0;
+            for (long c : ring) {
+                windowCount += c;
+            }
+            publish(WINDOW_COUNT, ".window.count", windowName, timestamp, windowCount);
+            publish(WINDOW_RATE, ".window.rate", windowName, timestamp, windowCount * 1000d / (ringFilled * interval));
+        }
+        if (events > 0) {
+            touch(timestamp);
+        }
+    }
+
+    private void publish(int output, String suffix, String window, long timestamp, double value) {
+        Gauge gauge = outputs[output];
+        if (gauge == null || gauge.isDetached()) {
+            gauge = gauges.apply(suffix, window == null ? Tags.empty() : Tags.singleton("window", window));
+            outputs[output] = gauge;
+        }
+        gauge.emit(DataPoint.doubleDataPoint(timestamp, value));
+    }
+}
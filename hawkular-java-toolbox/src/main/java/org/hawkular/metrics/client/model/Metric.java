@@ -23,6 +23,8 @@ public class Metric {
     private final String hawkularType;
     private final String name;
     final MetricChangeListener listener;
+    private volatile long lastUpdate = System.currentTimeMillis();
+    private volatile boolean detached;
 
     public Metric(String hawkularType, String name, MetricChangeListener listener) {
         this.hawkularType = hawkularType;
@@ -30,6 +32,42 @@ public class Metric {
         this.listener = listener;
     }
 
+    void emit(DataPoint<?> dp) {
+        lastUpdate = dp.getTimestamp();
+        listener.onChanged(this, dp);
+    }
+
+    /**
+     * Mark this metric as updated, for updates that don't emit (sampled out, suppressed, aggregated...)
+     */
+    void touch(long timestamp) {
+        lastUpdate = timestamp;
+    }
+
+    void touch() {
+        lastUpdate = System.currentTimeMillis();
+    }
+
+    /**
+     * Time of the last update of this metric, whether it emitted a datapoint or not, or of its creation if it hasn't
+     * been updated yet
+     */
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /**
+     * Called by the client when this metric is removed from its registry. The metric remains usable, but the client
+     * doesn't keep track of it anymore: asking the client again for the same metric will create a new one
+     */
+    public void detach() {
+        detached = true;
+    }
+
+    public boolean isDetached() {
+        return detached;
+    }
+
     public String getHawkularType() {
         return hawkularType;
     }
@@ -22,4 +22,10 @@ package org.hawkular.metrics.client.model;
 public interface MetricChangeListener {
     void onChanged(Metric metric, DataPoint<?> dp);
     void tag(Metric metric, Tags tags);
+
+    /**
+     * Called when a metric chose not to send a value, for instance because of a gauge deadband
+     */
+    default void onSuppressed(Metric metric) {
+    }
 }
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * No-op implementations of all metric types, used when the client is disabled or when a metric is filtered out.
+ * They compute nothing and send nothing, so that the JIT can reduce calls on them to nothing. They are shared
+ * singletons, named {@link #NAME}: getting a no-op metric allocates nothing.
+ * @author Joel Takvorian
+ */
+public final class NoopMetrics {
+
+    public static final MetricChangeListener LISTENER = new MetricChangeListener() {
+        @Override public void onChanged(Metric metric, DataPoint<?> dp) {
+        }
+
+        @Override public void tag(Metric metric, Tags tags) {
+        }
+    };
+
+    public static final String NAME = "noop";
+
+    private static final Gauge GAUGE = new NoopGauge();
+    private static final Counter COUNTER = new NoopCounter();
+    private static final Watch WATCH = new NoopWatch();
+    private static final Timer TIMER = new NoopTimer();
+    private static final Histogram HISTOGRAM = new NoopHistogram();
+    private static final Meter METER = new NoopMeter();
+    private static final DistinctCounter DISTINCT_COUNTER = new NoopDistinctCounter();
+    private static final TopK TOP_K = new NoopTopK();
+    private static final DerivedMetric DERIVED_METRIC = new NoopDerivedMetric();
+    private static final AvailabilityMetric AVAILABILITY = new NoopAvailability();
+    private static final Logger LOGGER = new NoopLogger();
+
+    private NoopMetrics() {
+    }
+
+    public static boolean isNoop(Metric metric) {
+        return metric instanceof Noop;
+    }
+
+    public static Gauge gauge(String name, MetricChangeListener listener) {
+        return GAUGE;
+    }
+
+    public static Counter counter(String name, MetricChangeListener listener) {
+        return COUNTER;
+    }
+
+    public static Watch watch(String name, MetricChangeListener listener) {
+        return WATCH;
+    }
+
+    public static Timer timer(String name, MetricChangeListener listener) {
+        return TIMER;
+    }
+
+    public static Histogram histogram(String name) {
+        return HISTOGRAM;
+    }
+
+    public static Meter meter(String name) {
+        return METER;
+    }
+
+    public static DistinctCounter distinctCounter(String name) {
+        return DISTINCT_COUNTER;
+    }
+
+    public static TopK topK(String name) {
+        return TOP_K;
+    }
+
+    public static DerivedMetric derivedMetric(String name) {
+        return DERIVED_METRIC;
+    }
+
+    public static AvailabilityMetric availability(String name, MetricChangeListener listener) {
+        return AVAILABILITY;
+    }
+
+    public static Logger logger(String name, MetricChangeListener listener) {
+        return LOGGER;
+    }
+
+    private static final class NoopGauge extends Gauge implements Noop {
+        private NoopGauge() {
+            super(NAME, LISTENER);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void set(double value) {
+        }
+
+        @Override public void set(double value, Tags tags) {
+        }
+
+        @Override public void tag(Tags tags) {
+        }
+    }
+
+    private static final class NoopCounter extends Counter implements Noop {
+        private NoopCounter() {
+            super(NAME, LISTENER);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void inc() {
+        }
+
+        @Override public void inc(Tags tags) {
+        }
+
+        @Override public void inc(long n) {
+        }
+
+        @Override void add(long timestamp, long n) {
+        }
+
+        @Override public void tag(Tags tags) {
+        }
+    }
+
+    private static final class NoopWatch extends Watch implements Noop {
+        private NoopWatch() {
+            super(NAME, LISTENER);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void reset() {
+        }
+
+        @Override public void tick() {
+        }
+
+        @Override public void tick(Tags tags) {
+        }
+
+        @Override public void tag(Tags tags) {
+        }
+    }
+
+    private static final class NoopTimer extends Timer implements Noop {
+        // Never running: stopping it records nothing
+        private final Context context = new Context(this, null, false);
+
+        private NoopTimer() {
+            super(NAME, LISTENER);
+        }
+
+        @Override public Context time() {
+            return context;
+        }
+
+        @Override public Context time(Tags tags) {
+            return context;
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void record(long duration, TimeUnit unit, Tags tags) {
+        }
+
+        @Override public void tag(Tags tags) {
+        }
+    }
+
+    private static final class NoopHistogram extends Histogram implements Noop {
+        private NoopHistogram() {
+            super(NAME, new double[0], null);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void record(long value) {
+        }
+
+        @Override public void report(long timestamp) {
+        }
+    }
+
+    private static final class NoopMeter extends Meter implements Noop {
+        private NoopMeter() {
+            super(NAME, 1, 0, null);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void mark() {
+        }
+
+        @Override public void mark(long n) {
+        }
+
+        @Override public void report(long timestamp) {
+        }
+    }
+
+    private static final class NoopDistinctCounter extends DistinctCounter implements Noop {
+        private NoopDistinctCounter() {
+            super(NAME, MIN_PRECISION, null);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void offer(long value) {
+        }
+
+        @Override public void offer(String value) {
+        }
+
+        @Override public void offer(Object value) {
+        }
+
+        @Override public void report(long timestamp) {
+        }
+    }
+
+    private static final class NoopTopK extends TopK implements Noop {
+        private NoopTopK() {
+            super(NAME, 1, null);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void offer(String value) {
+        }
+
+        @Override public void offer(String value, long weight) {
+        }
+
+        @Override public void report(long timestamp) {
+        }
+    }
+
+    private static final class NoopDerivedMetric extends DerivedMetric implements Noop {
+        private NoopDerivedMetric() {
+            super(NAME, Expression.parse("0"), null, null);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void report(long timestamp) {
+        }
+    }
+
+    private static final class NoopAvailability extends AvailabilityMetric implements Noop {
+        private NoopAvailability() {
+            super(NAME, LISTENER);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void up() {
+        }
+
+        @Override public void down() {
+        }
+
+        @Override public void unknown() {
+        }
+
+        @Override public void up(Tags tags) {
+        }
+
+        @Override public void down(Tags tags) {
+        }
+
+        @Override public void unknown(Tags tags) {
+        }
+
+        @Override public void tag(Tags tags) {
+        }
+    }
+
+    private static final class NoopLogger extends Logger implements Noop {
+        private NoopLogger() {
+            super(NAME, LISTENER);
+        }
+
+        @Override public void detach() {
+        }
+
+        @Override public void log(String value) {
+        }
+
+        @Override public void log(String value, Tags tags) {
+        }
+
+        @Override public void tag(Tags tags) {
+        }
+    }
+
+    private interface Noop {
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+/**
+ * Metrics that aggregate what they record, and publish the result periodically instead of on each change.
+ * The client calls {@link #report(long)} at each report interval.
+ * @author Joel Takvorian
+ */
+public interface Reportable {
+
+    /**
+     * Publish what has been aggregated since the last report
+     * @param timestamp the aligned timestamp of the report, to use for all datapoints
+     */
+    void report(long timestamp);
+}
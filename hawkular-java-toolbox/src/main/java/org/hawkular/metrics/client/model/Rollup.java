@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Rollup of a {@link Gauge} or a {@link Watch}: instead of sending each value, the metric accumulates min, max, sum
+ * and count during each report interval, and sends summaries at the end of the interval, with the aligned timestamp
+ * of the interval.<br/>
+ * A rollup either replaces the values of the metric with a single statistic (e.g. the max of the interval), or
+ * sends a set of derived gauges named after the metric, such as "name.max" and "name.avg".
+ * @author Joel Takvorian
+ */
+public final class Rollup {
+
+    public enum Stat {
+        MIN, MAX, SUM, COUNT, AVG;
+
+        private final String suffix = "." + name().toLowerCase();
+
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+
+    private final List<Stat> stats;
+    private final boolean derived;
+
+    private Rollup(List<Stat> stats, boolean derived) {
+        this.stats = stats;
+        this.derived = derived;
+    }
+
+    /**
+     * Send a single statistic per interval, in place of the metric values
+     */
+    public static Rollup single(Stat stat) {
+        return new Rollup(Collections.singletonList(stat), false);
+    }
+
+    /**
+     * Send derived gauges per interval, named after the metric with the statistic as suffix, such as "name.max"
+     */
+    public static Rollup derived(Stat... stats) {
+        if (stats.length == 0) {
+            throw new IllegalArgumentException("At least one statistic is expected for rollups");
+        }
+        return new Rollup(Collections.unmodifiableList(Arrays.asList(stats.clone())), true);
+    }
+
+    public List<Stat> getStats() {
+        return stats;
+    }
+
+    public boolean isDerived() {
+        return derived;
+    }
+
+    Accumulator accumulator() {
+        return new Accumulator(this);
+    }
+
+    /**
+     * Lock-free accumulation of values during an interval
+     */
+    static final class Accumulator {
+        private static final long POSITIVE_INFINITY = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        private static final long NEGATIVE_INFINITY = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+
+        private final Rollup rollup;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+        private final AtomicLong min = new AtomicLong(POSITIVE_INFINITY);
+        private final AtomicLong max = new AtomicLong(NEGATIVE_INFINITY);
+
+        private Accumulator(Rollup rollup) {
+            this.rollup = rollup;
+        }
+
+        void record(double value) {
+            count.increment();
+            sum.add(value);
+            long current = min.get();
+            while (value < Double.longBitsToDouble(current)
+                    && !min.compareAndSet(current, Double.doubleToRawLongBits(value))) {
+                current = min.get();
+            }
+            current = max.get();
+            while (value > Double.longBitsToDouble(current)
+                    && !max.compareAndSet(current, Double.doubleToRawLongBits(value))) {
+                current = max.get();
+            }
+        }
+
+        /**
+         * Send the summary of the interval, and start a new one
+         * @param metric the metric that accumulated values
+         * @param timestamp aligned timestamp of the interval
+         * @param outputs resolves derived gauges from their suffix
+         */
+        void flush(Metric metric, long timestamp, Function<String, Gauge> outputs) {
+            double[] summary = poll();
+            if (summary == null) {
+                return;
+            }
+            for (Stat stat : rollup.stats) {
+                DataPoint<Double> dp = DataPoint.doubleDataPoint(timestamp, value(stat, summary));
+                if (rollup.derived) {
+                    outputs.apply(stat.getSuffix()).emit(dp);
+                } else {
+                    metric.emit(dp);
+                }
+            }
+        }
+
+        /**
+         * Take the summary of the interval, and start a new one
+         * @return min, max, sum and count of the interval, or null if nothing was recorded
+         */
+        double[] poll() {
+            long n = count.sumThenReset();
+            if (n == 0) {
+                return null;
+            }
+            return new double[] {
+                    Double.longBitsToDouble(min.getAndSet(POSITIVE_INFINITY)),
+                    Double.longBitsToDouble(max.getAndSet(NEGATIVE_INFINITY)),
+                    sum.sumThenReset(),
+                    n
+            };
+        }
+
+        static double value(Stat stat, double[] summary) {
+            switch (stat) {
+                case MIN:
+                    return summary[0];
+                case MAX:
+                    return summary[1];
+                case SUM:
+                    return summary[2];
+                case COUNT:
+                    return summary[3];
+                default:
+                    return summary[2] / summary[3];
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampling policy of metrics that are recorded at a very high rate, and only need a statistical picture. Points are
+ * sampled at record time, before anything is allocated or sent.<br/>
+ * Sampled metrics are tagged with the sampling ratio ("sampling.ratio"), or with the maximum rate of points for
+ * rate-limited sampling ("sampling.maxRate", per second), so that dashboards can scale them. Counters are not tagged:
+ * sampling only skips sending some of their values, their count remains exact.
+ * @author Joel Takvorian
+ */
+public final class Sampling {
+
+    public static final String TAG_RATIO = "sampling.ratio";
+    public static final String TAG_MAX_RATE = "sampling.maxRate";
+
+    private final double probability;
+    private final long everyNth;
+    private final double maxRate;
+
+    private Sampling(double probability, long everyNth, double maxRate) {
+        this.probability = probability;
+        this.everyNth = everyNth;
+        this.maxRate = maxRate;
+    }
+
+    /**
+     * Keep each point with the given probability
+     * @param probability between 0 (excluded) and 1
+     */
+    public static Sampling probability(double probability) {
+        if (probability <= 0 || probability > 1) {
+            throw new IllegalArgumentException("Invalid sampling probability: " + probability
+                    + ", must be in ]0, 1]");
+        }
+        return new Sampling(probability, 0, 0);
+    }
+
+    /**
+     * Keep one point out of n
+     */
+    public static Sampling everyNth(long n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Invalid sampling period: " + n + ", must be at least 1");
+        }
+        return new Sampling(0, n, 0);
+    }
+
+    /**
+     * Keep at most the given number of points per second, allowing bursts of up to one second worth of points
+     */
+    public static Sampling rateLimit(double pointsPerSecond) {
+        if (pointsPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid sampling rate: " + pointsPerSecond + ", must be positive");
+        }
+        return new Sampling(0, 0, pointsPerSecond);
+    }
+
+    /**
+     * Tags describing this sampling, set on sampled metrics
+     */
+    public Tags getTags() {
+        if (maxRate > 0) {
+            return Tags.singleton(TAG_MAX_RATE, String.valueOf(maxRate));
+        }
+        return Tags.singleton(TAG_RATIO, String.valueOf(everyNth > 0 ? 1d / everyNth : probability));
+    }
+
+    Sampler sampler() {
+        if (everyNth > 0) {
+            return new EveryNthSampler(everyNth);
+        } else if (maxRate > 0) {
+            return new RateLimitSampler(maxRate);
+        }
+        return new ProbabilitySampler(probability);
+    }
+
+    /**
+     * Per-metric sampling state
+     */
+    abstract static class Sampler {
+        /**
+         * @return true if the point must be kept
+         */
+        abstract boolean sample();
+    }
+
+    private static final class ProbabilitySampler extends Sampler {
+        private final double probability;
+
+        private ProbabilitySampler(double probability) {
+            this.probability = probability;
+        }
+
+        @Override boolean sample() {
+            return ThreadLocalRandom.current().nextDouble() < probability;
+        }
+    }
+
+    private static final class EveryNthSampler extends Sampler {
+        private final long n;
+        private final AtomicLong count = new AtomicLong();
+
+        private EveryNthSampler(long n) {
+            this.n = n;
+        }
+
+        @Override boolean sample() {
+            return count.getAndIncrement() % n == 0;
+        }
+    }
+
+    /**
+     * Lock-free token bucket, expressed as the theoretical arrival time of the next point (GCRA)
+     */
+    private static final class RateLimitSampler extends Sampler {
+        private final long interval;
+        private final long burst = TimeUnit.SECONDS.toNanos(1);
+        private final AtomicLong nextArrival = new AtomicLong(System.nanoTime());
+
+        private RateLimitSampler(double pointsPerSecond) {
+            this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / pointsPerSecond));
+        }
+
+        @Override boolean sample() {
+            long now = System.nanoTime();
+            while (true) {
+                long arrival = nextArrival.get();
+                long next = Math.max(arrival - now, 0) + now + interval;
+                if (next - now > burst) {
+                    return false;
+                }
+                if (nextArrival.compareAndSet(arrival, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Aggregation of datapoints tags on the client side: some tags are dropped from the datapoints of a {@link Counter}
+ * or a {@link Gauge}, and points are aggregated across the values of the dropped tags. Aggregates are sent at each
+ * report interval, with the interval timestamp, instead of each point.<br/>
+ * Counters send, per remaining tags, the number of increments. Gauges send, per remaining tags, a statistic of the
+ * interval (max by default). Each group of remaining tags is sent on its own metric, named after the aggregated
+ * metric with the remaining tags values as suffix, sorted by tag name: for instance, "http.requests" aggregated
+ * across "instance" sends "http.requests.GET" tagged method:GET. Points without any remaining tag are sent on
+ * "name.all", as the aggregated metric itself keeps sending its own values (the overall count, for counters).<br/>
+ * The number of aggregation groups per metric is bounded: points that would create more groups are aggregated in
+ * the shared group "name.__overflow__", tagged "__overflow__".
+ * @author Joel Takvorian
+ */
+public final class TagAggregation {
+
+    public static final int DEFAULT_MAX_GROUPS = 100;
+    private static final Tags OVERFLOW_TAGS = Tags.singleton("__overflow__", "true");
+    private static final String ALL = "all";
+
+    private final Set<String> droppedTags;
+    private final Rollup.Stat gaugeStat;
+    private final int maxGroups;
+
+    private TagAggregation(Set<String> droppedTags, Rollup.Stat gaugeStat, int maxGroups) {
+        this.droppedTags = droppedTags;
+        this.gaugeStat = gaugeStat;
+        this.maxGroups = maxGroups;
+    }
+
+    /**
+     * Drop the given tags from datapoints, and aggregate across their values
+     */
+    public static TagAggregation drop(String... tagKeys) {
+        return new TagAggregation(Collections.unmodifiableSet(new HashSet<>(Arrays.asList(tagKeys))),
+                Rollup.Stat.MAX, DEFAULT_MAX_GROUPS);
+    }
+
+    /**
+     * Statistic sent by gauges for each group, max by default
+     */
+    public TagAggregation gaugeStat(Rollup.Stat stat) {
+        return new TagAggregation(droppedTags, stat, maxGroups);
+    }
+
+    /**
+     * Maximum number of aggregation groups per metric, {@link #DEFAULT_MAX_GROUPS} by default
+     */
+    public TagAggregation maxGroups(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("Invalid max groups: " + max + ", must be at least 1");
+        }
+        return new TagAggregation(droppedTags, gaugeStat, max);
+    }
+
+    public Set<String> getDroppedTags() {
+        return droppedTags;
+    }
+
+    public Rollup.Stat getGaugeStat() {
+        return gaugeStat;
+    }
+
+    public int getMaxGroups() {
+        return maxGroups;
+    }
+
+    CounterAggregator counterAggregator() {
+        return new CounterAggregator(this);
+    }
+
+    GaugeAggregator gaugeAggregator() {
+        return new GaugeAggregator(this);
+    }
+
+    /**
+     * Groups of aggregated points, by remaining tags. Groups are held in a fixed-size open-addressing table, as their
+     * number is bounded: looking up an existing group doesn't allocate, only creating a group takes a lock.<br/>
+     * Each group is sent on its own metric, named after the aggregated metric with the remaining tags values as
+     * suffix (e.g. "http.requests.GET"), and tagged with the remaining tags: Hawkular keeps a single datapoint per
+     * metric and timestamp, so groups sent at the same interval timestamp can't share a metric.
+     */
+    abstract static class Aggregator<C, M extends Metric> {
+        final TagAggregation aggregation;
+        private final AtomicReferenceArray<Group<C, M>> table;
+        // Guarded by this
+        private int size;
+        private Group<C, M> overflow;
+
+        private Aggregator(TagAggregation aggregation) {
+            this.aggregation = aggregation;
+            int capacity = 4;
+            while (capacity < 2 * (aggregation.maxGroups + 1)) {
+                capacity <<= 1;
+            }
+            this.table = new AtomicReferenceArray<>(capacity);
+        }
+
+        abstract C newCell();
+
+        C cell(Tags tags) {
+            int hash = 0;
+            int count = 0;
+            for (Tag tag : tags.asList()) {
+                if (!aggregation.droppedTags.contains(tag.getKey())) {
+                    hash += tag.hashCode();
+                    count++;
+                }
+            }
+            hash ^= hash >>> 16;
+            int mask = table.length() - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                Group<C, M> group = table.get(i);
+                if (group == null) {
+                    break;
+                }
+                if (group.hash == hash && group.matches(tags, count, aggregation.droppedTags)) {
+                    return group.cell;
+                }
+            }
+            return newGroup(hash, tags, count);
+        }
+
+        private synchronized C newGroup(int hash, Tags tags, int count) {
+            int mask = table.length() - 1;
+            int i = hash & mask;
+            for (; ; i = (i + 1) & mask) {
+                Group<C, M> group = table.get(i);
+                if (group == null) {
+                    break;
+                }
+                if (group.hash == hash && group.matches(tags, count, aggregation.droppedTags)) {
+                    return group.cell;
+                }
+            }
+            if (size >= aggregation.maxGroups) {
+                if (overflow == null) {
+                    overflow = new Group<>(0, OVERFLOW_TAGS, ".__overflow__", newCell());
+                }
+                return overflow.cell;
+            }
+            Tags key = new Tags();
+            List<String> values = new ArrayList<>(count);
+            for (Tag tag : tags.asList()) {
+                if (!aggregation.droppedTags.contains(tag.getKey())) {
+                    key.add(tag);
+                }
+            }
+            key.getMap().keySet().stream().sorted()
+                    .forEach(k -> values.add(key.getMap().get(k).getValue().orElse(k)));
+            String suffix = "." + (values.isEmpty() ? ALL : String.join(".", values));
+            Group<C, M> group = new Group<>(hash, key, suffix, newCell());
+            table.set(i, group);
+            size++;
+            return group.cell;
+        }
+
+        /**
+         * All groups, for flushing
+         */
+        List<Group<C, M>> groups() {
+            List<Group<C, M>> groups = new ArrayList<>();
+            for (int i = 0; i < table.length(); i++) {
+                Group<C, M> group = table.get(i);
+                if (group != null) {
+                    groups.add(group);
+                }
+            }
+            synchronized (this) {
+                if (overflow != null) {
+                    groups.add(overflow);
+                }
+            }
+            return groups;
+        }
+    }
+
+    static final class Group<C, M extends Metric> {
+        private final int hash;
+        private final Tags key;
+        private final String suffix;
+        final C cell;
+        // Only accessed from the reporting thread
+        private M output;
+
+        private Group(int hash, Tags key, String suffix, C cell) {
+            this.hash = hash;
+            this.key = key;
+            this.suffix = suffix;
+            this.cell = cell;
+        }
+
+        private boolean matches(Tags tags, int count, Set<String> droppedTags) {
+            if (key.getMap().size() != count) {
+                return false;
+            }
+            for (Tag tag : tags.asList()) {
+                if (!droppedTags.contains(tag.getKey()) && !tag.equals(key.getMap().get(tag.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Metric of this group, resolved from its suffix and tags
+         */
+        M output(BiFunction<String, Tags, M> outputs) {
+            if (output == null || output.isDetached()) {
+                output = outputs.apply(suffix, key);
+            }
+            return output;
+        }
+    }
+
+    static final class CounterAggregator extends Aggregator<CounterAggregator.Cell, Counter> {
+
+        private CounterAggregator(TagAggregation aggregation) {
+            super(aggregation);
+        }
+
+        @Override Cell newCell() {
+            return new Cell();
+        }
+
+        void increment(Tags tags) {
+            cell(tags).count.increment();
+        }
+
+        /**
+         * Send the count of each group that changed since the last flush
+         */
+        void flush(long timestamp, BiFunction<String, Tags, Counter> outputs) {
+            for (Group<Cell, Counter> group : groups()) {
+                Cell cell = group.cell;
+                long count = cell.count.sum();
+                if (count != cell.sent) {
+                    cell.sent = count;
+                    group.output(outputs).emit(DataPoint.longDataPoint(timestamp, count));
+                }
+            }
+        }
+
+        static final class Cell {
+            private final LongAdder count = new LongAdder();
+            // Only accessed from the reporting thread
+            private long sent;
+        }
+    }
+
+    static final class GaugeAggregator extends Aggregator<Rollup.Accumulator, Gauge> {
+        private final Rollup rollup;
+
+        private GaugeAggregator(TagAggregation aggregation) {
+            super(aggregation);
+            this.rollup = Rollup.single(aggregation.gaugeStat);
+        }
+
+        @Override Rollup.Accumulator newCell() {
+            return rollup.accumulator();
+        }
+
+        void record(Tags tags, double value) {
+            cell(tags).record(value);
+        }
+
+        /**
+         * Send the statistic of each group that was fed since the last flush
+         */
+        void flush(long timestamp, BiFunction<String, Tags, Gauge> outputs) {
+            for (Group<Rollup.Accumulator, Gauge> group : groups()) {
+                double[] summary = group.cell.poll();
+                if (summary != null) {
+                    group.output(outputs).emit(DataPoint.doubleDataPoint(timestamp,
+                            Rollup.Accumulator.value(aggregation.gaugeStat, summary)));
+                }
+            }
+        }
+    }
+}
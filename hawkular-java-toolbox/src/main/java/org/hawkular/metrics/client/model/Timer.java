@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures durations with {@link System#nanoTime()}, and reports them in milliseconds, as gauges.<br/>
+ * Unlike {@link Watch}, a Timer is thread-safe: each measure is held by its own {@link Context}, that can be used in
+ * a try-with-resources block or stopped from another thread:
+ * <pre>
+ *     try (Timer.Context ctx = timer.time()) {
+ *         // timed code
+ *     }
+ * </pre>
+ * Each call to {@link #time()} creates a new context, so that a stale context never affects a newer measure.
+ * @author Joel Takvorian
+ */
+public class Timer extends Metric {
+
+    private final Sampling.Sampler sampler;
+
+    public Timer(String name, MetricChangeListener listener) {
+        this(name, listener, null);
+    }
+
+    /**
+     * @param sampling when not null, only sampled measures are recorded
+     */
+    public Timer(String name, MetricChangeListener listener, Sampling sampling) {
+        super("gauges", name, listener);
+        this.sampler = sampling == null ? null : sampling.sampler();
+    }
+
+    /**
+     * Start timing. The returned context must be stopped or closed; stopping it again has no effect.
+     */
+    public Context time() {
+        return time(null);
+    }
+
+    /**
+     * Start timing, with datapoint tags that will be associated with the measure. The returned context must be
+     * stopped or closed; stopping it again has no effect.
+     * @param tags datapoint tags
+     */
+    public Context time(Tags tags) {
+        return new Context(this, tags, true);
+    }
+
+    /**
+     * Record a duration measured elsewhere
+     * @param duration the duration
+     * @param unit time unit of the duration
+     */
+    public void record(long duration, TimeUnit unit) {
+        record(duration, unit, null);
+    }
+
+    /**
+     * Record a duration measured elsewhere, with datapoint tags
+     * @param duration the duration
+     * @param unit time unit of the duration
+     * @param tags datapoint tags
+     */
+    public void record(long duration, TimeUnit unit, Tags tags) {
+        if (sampler != null && !sampler.sample()) {
+            touch();
+            return;
+        }
+        emit(DataPoint.doubleDataPoint(System.currentTimeMillis(), unit.toNanos(duration) / 1_000_000d, tags));
+    }
+
+    public static final class Context implements AutoCloseable {
+        private final Timer timer;
+        private final Tags tags;
+        private final AtomicBoolean running;
+        private final long start = System.nanoTime();
+
+        Context(Timer timer, Tags tags, boolean running) {
+            this.timer = timer;
+            this.tags = tags;
+            this.running = new AtomicBoolean(running);
+        }
+
+        /**
+         * Stop timing and record the measure. Calling it several times records only once.
+         * @return the elapsed time in nanoseconds, or -1 if this context was already stopped
+         */
+        public long stop() {
+            long elapsed = System.nanoTime() - start;
+            if (!running.compareAndSet(true, false)) {
+                return -1;
+            }
+            timer.record(elapsed, TimeUnit.NANOSECONDS, tags);
+            return elapsed;
+        }
+
+        @Override public void close() {
+            stop();
+        }
+    }
+}
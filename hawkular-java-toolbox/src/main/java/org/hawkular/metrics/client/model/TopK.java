@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.model;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Tracks the most frequent values (tenants, endpoints...) among a stream with too many distinct values to have a
+ * counter for each of them.<br/>
+ * It uses the Space-Saving algorithm: only a bounded number of values are tracked (10 times the number of
+ * published values); when a new value comes and all slots are taken, it replaces the least frequent one among a few
+ * sampled slots, and inherits its count. Counts are then overestimated by at most the count of the replaced value,
+ * but the heaviest values are reliably found.<br/>
+ * At each report interval, the values that are among the most frequent ones are published as counters, named after
+ * the TopK metric with the ".top.[value]" suffix, and tagged with the value. A counter is only created once its value
+ * reaches the top, so the number of metric definitions stays bounded by the values that actually ranked. Counters only
+ * add the part of the count that is certain, excluding the count inherited from replaced values: they never go
+ * backwards, even when a value is replaced and comes back. Nothing is published when nothing was offered during the
+ * interval.<br/>
+ * Offering an already tracked value is lock-free; replacing a value takes a lock, for a constant time.
+ * @author Joel Takvorian
+ */
+public class TopK extends Metric implements Reportable {
+
+    public static final int DEFAULT_SIZE = 10;
+    private static final int CAPACITY_FACTOR = 10;
+    private static final int EVICTION_SAMPLES = 16;
+
+    private final int size;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Slot[] table;
+    private int filled;
+    private final BiFunction<String, Tags, Counter> counters;
+    // Only accessed from the reporting thread
+    private long lastTotal;
+
+    /**
+     * @param name the TopK metric name
+     * @param size number of top values to publish
+     * @param counters resolves the output counters, from a name suffix and tags
+     */
+    public TopK(String name, int size, BiFunction<String, Tags, Counter> counters) {
+        super("counters", name, NoopMetrics.LISTENER);
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid size: " + size + ", must be positive");
+        }
+        this.size = size;
+        this.table = new Slot[size * CAPACITY_FACTOR];
+        this.counters = counters;
+    }
+
+    /**
+     * Offer a value once
+     */
+    public void offer(String value) {
+        offer(value, 1);
+    }
+
+    /**
+     * Offer a value with a weight, as if it was offered {@code weight} times
+     */
+    public void offer(String value, long weight) {
+        Slot slot = slots.get(value);
+        if (slot == null) {
+            slot = replace(value);
+        }
+        slot.count.add(weight);
+    }
+
+    private synchronized Slot replace(String value) {
+        Slot slot = slots.get(value);
+        if (slot != null) {
+            return slot;
+        }
+        int index;
+        long inherited = 0;
+        if (filled < table.length) {
+            index = filled++;
+        } else {
+            // Sampling the least frequent slot keeps replacement in constant time; heavy values are a small part of
+            // the slots, so they are very unlikely to be the minimum of a sample
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            index = random.nextInt(table.length);
+            long minCount = table[index].count.sum();
+            for (int i = 1; i < EVICTION_SAMPLES; i++) {
+                int candidate = random.nextInt(table.length);
+                long count = table[candidate].count.sum();
+                if (count < minCount) {
+                    index = candidate;
+                    minCount = count;
+                }
+            }
+            slots.remove(table[index].value);
+            inherited = minCount;
+        }
+        slot = new Slot(value, inherited);
+        table[index] = slot;
+        slots.put(value, slot);
+        return slot;
+    }
+
+    @Override public void report(long timestamp) {
+        List<Map.Entry<Slot, Long>> counts = new ArrayList<>(slots.size());
+        long total = 0;
+        for (Slot slot : slots.values()) {
+            long count = slot.count.sum();
+            total += count;
+            counts.add(new AbstractMap.SimpleImmutableEntry<>(slot, count));
+        }
+        if (total == lastTotal) {
+            return;
+        }
+        lastTotal = total;
+        counts.sort(Map.Entry.<Slot, Long>comparingByValue().reversed());
+        for (int i = 0; i < Math.min(size, counts.size()); i++) {
+            Slot slot = counts.get(i).getKey();
+            long delta = counts.get(i).getValue() - slot.published;
+            if (delta > 0) {
+                slot.output().add(timestamp, delta);
+                slot.published += delta;
+            }
+        }
+        touch(timestamp);
+    }
+
+    private final class Slot {
+        private final String value;
+        private final LongAdder count = new LongAdder();
+        // Only accessed from the reporting thread: part of the count already published, starting with the inherited
+        // count, that is not certain
+        private long published;
+        private Counter output;
+
+        private Slot(String value, long inherited) {
+            this.value = value;
+            count.add(inherited);
+            published = inherited;
+        }
+
+        private Counter output() {
+            if (output == null || output.isDetached()) {
+                output = counters.apply(".top." + value, Tags.singleton("value", value));
+            }
+            return output;
+        }
+    }
+}
@@ -16,15 +16,27 @@
  */
 package org.hawkular.metrics.client.model;
 
+import java.util.function.Function;
+
 /**
  * @author Joel Takvorian
  */
 public class Watch extends Metric {
 
+    private final Rollup.Accumulator rollup;
     private long timestamp;
 
     public Watch(String name, MetricChangeListener listener) {
+        this(name, listener, null);
+    }
+
+    /**
+     * @param rollup when not null, elapsed times are accumulated and only sent as a summary at each {@link #flush}.
+     *               Ticks with datapoint tags are always sent.
+     */
+    public Watch(String name, MetricChangeListener listener, Rollup rollup) {
         super("gauges", name, listener);
+        this.rollup = rollup == null ? null : rollup.accumulator();
         reset();
     }
 
@@ -34,13 +46,29 @@ public class Watch extends Metric {
 
     public void tick() {
         long tick = System.currentTimeMillis();
-        listener.onChanged(this, DataPoint.doubleDataPoint(System.currentTimeMillis(), tick - timestamp));
+        if (rollup != null) {
+            rollup.record(tick - timestamp);
+            touch(tick);
+        } else {
+            emit(DataPoint.doubleDataPoint(tick, tick - timestamp));
+        }
         timestamp = tick;
     }
 
     public void tick(Tags tags) {
         long tick = System.currentTimeMillis();
-        listener.onChanged(this, DataPoint.doubleDataPoint(System.currentTimeMillis(), tick - timestamp, tags));
+        emit(DataPoint.doubleDataPoint(System.currentTimeMillis(), tick - timestamp, tags));
         timestamp = tick;
     }
+
+    /**
+     * Send the rollup summary of the elapsed interval, if any
+     * @param timestamp aligned timestamp of the interval
+     * @param outputs resolves derived gauges from their suffix, such as ".max"
+     */
+    public void flush(long timestamp, Function<String, Gauge> outputs) {
+        if (rollup != null) {
+            rollup.flush(this, timestamp, outputs);
+        }
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.monitor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive sampling period of a {@link MonitoringSession}: each feeder has its own period, between a min and a max.
+ * The period is halved when the values of a feeder change quickly, snaps to the min when a value crosses one of the
+ * thresholds, and grows back slowly towards the max while values are stable.
+ * @author Joel Takvorian
+ */
+public final class AdaptivePeriod {
+
+    private final long minPeriod;
+    private final long maxPeriod;
+    private final double changeRatio;
+    private final double[] thresholds;
+
+    private AdaptivePeriod(long minPeriod, long maxPeriod, double changeRatio, double[] thresholds) {
+        this.minPeriod = minPeriod;
+        this.maxPeriod = maxPeriod;
+        this.changeRatio = changeRatio;
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Period between the given bounds. By default, a change of more than 10% is considered quick, and there's no
+     * threshold.
+     */
+    public static AdaptivePeriod between(long min, long max, TimeUnit unit) {
+        if (min <= 0 || max < min) {
+            throw new IllegalArgumentException("Invalid period bounds: [" + min + ", " + max + "]");
+        }
+        return new AdaptivePeriod(unit.toMillis(min), unit.toMillis(max), 0.1, new double[0]);
+    }
+
+    /**
+     * Relative change between two samples above which values are considered to change quickly, e.g. 0.1 for 10%
+     */
+    public AdaptivePeriod changeRatio(double ratio) {
+        return new AdaptivePeriod(minPeriod, maxPeriod, ratio, thresholds);
+    }
+
+    /**
+     * Values that make the period snap to the min when they are crossed, in either direction
+     */
+    public AdaptivePeriod thresholds(double... values) {
+        return new AdaptivePeriod(minPeriod, maxPeriod, changeRatio, values.clone());
+    }
+
+    public long getMinPeriod() {
+        return minPeriod;
+    }
+
+    public long getMaxPeriod() {
+        return maxPeriod;
+    }
+
+    /**
+     * Next period of a feeder, from its current period and the variation of one of its values
+     * @param period current period, in milliseconds
+     * @param previous previous value
+     * @param current current value
+     * @return the next period, in milliseconds, or {@link Long#MAX_VALUE} if the value is stable
+     */
+    long next(long period, double previous, double current) {
+        for (double threshold : thresholds) {
+            if ((previous < threshold) != (current < threshold)) {
+                return minPeriod;
+            }
+        }
+        double change = Math.abs(current - previous) / Math.max(Math.abs(previous), Double.MIN_NORMAL);
+        if (change > changeRatio) {
+            return Math.max(minPeriod, period / 2);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Next period of a feeder whose values were all stable
+     */
+    long grow(long period) {
+        return Math.min(maxPeriod, period + Math.max(1, period / 4));
+    }
+
+    long clamp(long period) {
+        return Math.max(minPeriod, Math.min(maxPeriod, period));
+    }
+}
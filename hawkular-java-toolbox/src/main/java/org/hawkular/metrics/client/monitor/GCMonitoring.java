@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.monitor;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hawkular.metrics.client.HawkularClient;
+import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.Histogram;
+import org.hawkular.metrics.client.model.Tag;
+import org.hawkular.metrics.client.model.Tags;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Garbage collection monitoring. For each collector, with metric tag "collector" set to the collector name (and its
+ * sanitized name in the metric name, e.g. "g1_young_generation"):
+ * <ul>
+ *     <li>"monitor.gc.[collector].collections.rate": collections per second</li>
+ *     <li>"monitor.gc.[collector].time.rate": milliseconds spent collecting per second</li>
+ *     <li>"monitor.gc.[collector].pause": histogram of collection durations in milliseconds, from GC notifications</li>
+ * </ul>
+ * And for the whole JVM:
+ * <ul>
+ *     <li>"monitor.gc.overhead": percentage of time spent collecting</li>
+ *     <li>"monitor.gc.allocation.rate": bytes allocated in young pools per second, measured at each collection</li>
+ *     <li>"monitor.gc.promotion.rate": bytes promoted to old pools per second, measured at each collection</li>
+ * </ul>
+ * @author Joel Takvorian
+ */
+public class GCMonitoring implements MonitoringSession.FeederSet {
+
+    private final Tags tags;
+
+    private GCMonitoring(Tags tags) {
+        this.tags = tags;
+    }
+
+    /**
+     * Polling feeders only: allocation and promotion rates, that are measured at each collection, are not fed
+     */
+    @Override
+    public Collection<MonitoringSession.Feeder> feeds(HawkularClient sessionBox) {
+        return feeds(sessionBox, null);
+    }
+
+    /**
+     * Event feeders only: allocation and promotion rates, that are fed by the polling feeder, are not measured
+     */
+    @Override
+    public Collection<MonitoringSession.EventFeeder> eventFeeds(HawkularClient sessionBox) {
+        return eventFeeds(sessionBox, null);
+    }
+
+    @Override
+    public MonitoringSession.Feeders feeders(HawkularClient sessionBox) {
+        // Measured by the notifications listener of the session, and read by its feeder
+        Allocations allocations = new Allocations();
+        return new MonitoringSession.Feeders(feeds(sessionBox, allocations), eventFeeds(sessionBox, allocations));
+    }
+
+    private Collection<MonitoringSession.Feeder> feeds(HawkularClient sessionBox, Allocations allocations) {
+        List<Collector> collectors = new ArrayList<>();
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collectors.add(new Collector(sessionBox, bean));
+        }
+        Gauge overhead = sessionBox.gauge("monitor.gc.overhead", tags);
+        Gauge allocationRate = allocations == null ? null : sessionBox.gauge("monitor.gc.allocation.rate", tags);
+        Gauge promotionRate = allocations == null ? null : sessionBox.gauge("monitor.gc.promotion.rate", tags);
+        long[] lastTime = {-1};
+        return Collections.singletonList(() -> {
+            long now = System.nanoTime();
+            long collectionTime = 0;
+            boolean first = lastTime[0] < 0;
+            double elapsedSeconds = (now - lastTime[0]) / 1e9;
+            for (Collector collector : collectors) {
+                collectionTime += collector.feed(first ? 0 : elapsedSeconds);
+            }
+            long bytesAllocated = allocations == null ? 0 : allocations.allocated.sumThenReset();
+            long bytesPromoted = allocations == null ? 0 : allocations.promoted.sumThenReset();
+            lastTime[0] = now;
+            if (first || elapsedSeconds <= 0) {
+                return;
+            }
+            overhead.set(Math.min(100d, collectionTime / (elapsedSeconds * 10d)));
+            if (allocations != null) {
+                allocationRate.set(bytesAllocated / elapsedSeconds);
+                promotionRate.set(bytesPromoted / elapsedSeconds);
+            }
+        });
+    }
+
+    private Collection<MonitoringSession.EventFeeder> eventFeeds(HawkularClient sessionBox, Allocations allocations) {
+        Map<String, Histogram> pauses = new HashMap<>();
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            pauses.put(bean.getName(), sessionBox.histogram(metricName(bean.getName(), "pause"), collectorTags(bean)));
+        }
+        return Collections.singletonList(JmxNotifications.garbageCollections((timestamp, info) -> {
+            Histogram pause = pauses.get(info.getGcName());
+            if (pause != null) {
+                pause.record(info.getGcInfo().getDuration());
+            }
+            if (allocations != null) {
+                allocations.measure(info);
+            }
+        }));
+    }
+
+    private static boolean isYoung(String pool) {
+        return pool.contains("Eden") || pool.contains("Nursery");
+    }
+
+    private static boolean isOld(String pool) {
+        return pool.contains("Old") || pool.contains("Tenured");
+    }
+
+    private static String metricName(String collector, String suffix) {
+        return "monitor.gc." + MetricNames.segment(collector) + "." + suffix;
+    }
+
+    private Tags collectorTags(GarbageCollectorMXBean bean) {
+        return Tags.from(tags, Tags.singleton("collector", bean.getName()));
+    }
+
+    /**
+     * Bytes allocated and promoted since the last feed
+     */
+    private static final class Allocations {
+        private final LongAdder allocated = new LongAdder();
+        private final LongAdder promoted = new LongAdder();
+        // Young pools usage after the last collection, only accessed from the notifications listener
+        private final Map<String, Long> youngUsageAfterGc = new HashMap<>();
+
+        private void measure(GarbageCollectionNotificationInfo info) {
+            Map<String, MemoryUsage> before = info.getGcInfo().getMemoryUsageBeforeGc();
+            Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+            synchronized (youngUsageAfterGc) {
+                before.forEach((pool, usage) -> {
+                    MemoryUsage usageAfter = after.get(pool);
+                    if (usageAfter == null) {
+                        return;
+                    }
+                    if (isYoung(pool)) {
+                        // Allocated since the last collection
+                        Long previous = youngUsageAfterGc.put(pool, usageAfter.getUsed());
+                        allocated.add(Math.max(0, usage.getUsed() - (previous == null ? 0 : previous)));
+                    } else if (isOld(pool)) {
+                        promoted.add(Math.max(0, usageAfter.getUsed() - usage.getUsed()));
+                    }
+                });
+            }
+        }
+    }
+
+    private final class Collector {
+        private final GarbageCollectorMXBean bean;
+        private final Gauge collectionsRate;
+        private final Gauge timeRate;
+        private long lastCount;
+        private long lastTime;
+
+        private Collector(HawkularClient sessionBox, GarbageCollectorMXBean bean) {
+            this.bean = bean;
+            Tags collectorTags = collectorTags(bean);
+            this.collectionsRate = sessionBox.gauge(metricName(bean.getName(), "collections.rate"), collectorTags);
+            this.timeRate = sessionBox.gauge(metricName(bean.getName(), "time.rate"), collectorTags);
+            this.lastCount = bean.getCollectionCount();
+            this.lastTime = bean.getCollectionTime();
+        }
+
+        /**
+         * @return milliseconds spent collecting since the last call
+         */
+        private long feed(double elapsedSeconds) {
+            long count = bean.getCollectionCount();
+            long time = bean.getCollectionTime();
+            long elapsedTime = Math.max(0, time - lastTime);
+            if (elapsedSeconds > 0 && count >= 0 && lastCount >= 0) {
+                collectionsRate.set((count - lastCount) / elapsedSeconds);
+                timeRate.set(elapsedTime / elapsedSeconds);
+            }
+            lastCount = count;
+            lastTime = time;
+            return elapsedTime;
+        }
+    }
+
+    public static GCMonitoring create() {
+        return new GCMonitoring(Tags.empty());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Tags tags = Tags.empty();
+
+        private Builder() {
+        }
+
+        public Builder withTags(Tags tags) {
+            this.tags.add(tags);
+            return this;
+        }
+
+        public Builder withTag(String key, String value) {
+            this.tags.add(Tag.keyValue(key, value));
+            return this;
+        }
+
+        public GCMonitoring build() {
+            return new GCMonitoring(tags);
+        }
+    }
+}
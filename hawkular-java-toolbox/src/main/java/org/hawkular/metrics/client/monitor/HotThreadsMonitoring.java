@@ -0,0 +1,279 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.hawkular.metrics.client.HawkularClient;
+import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.Tag;
+import org.hawkular.metrics.client.model.Tags;
+
+/**
+ * Hot threads monitoring: at each feed, the CPU time consumed by each thread since the previous feed is measured, and
+ * the top consumers are sent in percent of one core, each rank on its own gauge "monitor.threads.hot.[rank]"
+ * ("monitor.threads.hot.1" being the hottest), with datapoint tag "thread" set to the name of the thread that held
+ * this rank. With {@link Builder#groupByPool()}, threads are grouped by name pattern (digits replaced with '*', e.g.
+ * "pool-*-thread-*"), and the datapoint tag is "pool", which keeps the number of distinct tags low.<br/>
+ * Thread ids and names are cached, and only refreshed every {@link Builder#refreshEvery(int)} feeds, where only the
+ * threads started since the previous refresh are looked up; CPU times are read in a single call where the JVM supports
+ * it.
+ * @author Joel Takvorian
+ */
+public class HotThreadsMonitoring implements MonitoringSession.FeederSet {
+
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    private final Tags tags;
+    private final int top;
+    private final boolean groupByPool;
+    private final int refreshEvery;
+
+    private HotThreadsMonitoring(Tags tags, int top, boolean groupByPool, int refreshEvery) {
+        this.tags = tags;
+        this.top = top;
+        this.groupByPool = groupByPool;
+        this.refreshEvery = refreshEvery;
+    }
+
+    @Override
+    public Collection<MonitoringSession.Feeder> feeds(HawkularClient sessionBox) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadCpuTimeSupported()) {
+            return Collections.emptyList();
+        }
+        if (!threadMXBean.isThreadCpuTimeEnabled()) {
+            threadMXBean.setThreadCpuTimeEnabled(true);
+        }
+        Gauge[] ranks = new Gauge[top];
+        for (int rank = 0; rank < top; rank++) {
+            ranks[rank] = sessionBox.gauge("monitor.threads.hot." + (rank + 1), tags);
+        }
+        HotThreads hotThreads = new HotThreads(threadMXBean, ranks);
+        return Collections.singletonList(hotThreads::feed);
+    }
+
+    /**
+     * Feeds run sequentially: no need for synchronization
+     */
+    private final class HotThreads {
+        private final ThreadMXBean threadMXBean;
+        private final Gauge[] ranks;
+        private final String tagKey;
+        private long[] ids = new long[0];
+        private String[] keys = new String[0];
+        // CPU time at the previous feed for each id, or -1 when unknown
+        private long[] cpuTimes = new long[0];
+        private long lastTime;
+        private int feedsSinceRefresh;
+
+        private HotThreads(ThreadMXBean threadMXBean, Gauge[] ranks) {
+            this.threadMXBean = threadMXBean;
+            this.ranks = ranks;
+            this.tagKey = groupByPool ? "pool" : "thread";
+            // Threads started after the refresh remain unknown until the next one
+            refresh();
+        }
+
+        private void feed() {
+            if (++feedsSinceRefresh >= refreshEvery) {
+                refresh();
+            }
+            long now = System.nanoTime();
+            long[] current = readCpuTimes();
+            long elapsed = now - lastTime;
+            if (lastTime != 0 && elapsed > 0) {
+                publish(current, elapsed);
+            }
+            cpuTimes = current;
+            lastTime = now;
+        }
+
+        /**
+         * Drop the threads that died, and look up the name of the threads started since the previous refresh only
+         */
+        private void refresh() {
+            feedsSinceRefresh = 0;
+            Map<Long, Integer> known = new HashMap<>(ids.length * 2);
+            for (int i = 0; i < ids.length; i++) {
+                known.put(ids[i], i);
+            }
+            long[] allIds = threadMXBean.getAllThreadIds();
+            long[] started = new long[allIds.length];
+            int nbStarted = 0;
+            for (long id : allIds) {
+                if (!known.containsKey(id)) {
+                    started[nbStarted++] = id;
+                }
+            }
+            Map<Long, String> startedKeys = new HashMap<>(nbStarted * 2);
+            if (nbStarted > 0) {
+                for (ThreadInfo info : threadMXBean.getThreadInfo(Arrays.copyOf(started, nbStarted))) {
+                    // Null when the thread is no longer alive
+                    if (info != null) {
+                        startedKeys.put(info.getThreadId(), groupByPool
+                                ? DIGITS.matcher(info.getThreadName()).replaceAll("*")
+                                : info.getThreadName());
+                    }
+                }
+            }
+            long[] newIds = new long[allIds.length];
+            String[] newKeys = new String[allIds.length];
+            long[] newCpuTimes = new long[allIds.length];
+            int alive = 0;
+            for (long id : allIds) {
+                Integer previous = known.get(id);
+                String key = previous == null ? startedKeys.get(id) : keys[previous];
+                if (key != null) {
+                    newIds[alive] = id;
+                    newKeys[alive] = key;
+                    newCpuTimes[alive] = previous == null ? -1L : cpuTimes[previous];
+                    alive++;
+                }
+            }
+            ids = Arrays.copyOf(newIds, alive);
+            keys = Arrays.copyOf(newKeys, alive);
+            cpuTimes = Arrays.copyOf(newCpuTimes, alive);
+        }
+
+        private long[] readCpuTimes() {
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadCpuTime(ids);
+            }
+            long[] times = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                times[i] = threadMXBean.getThreadCpuTime(ids[i]);
+            }
+            return times;
+        }
+
+        private void publish(long[] current, long elapsed) {
+            String[] topKeys = new String[top];
+            long[] topValues = new long[top];
+            if (groupByPool) {
+                Map<String, Long> pools = new HashMap<>();
+                for (int i = 0; i < ids.length; i++) {
+                    long delta = delta(current, i);
+                    if (delta > 0) {
+                        pools.merge(keys[i], delta, Long::sum);
+                    }
+                }
+                pools.forEach((pool, delta) -> insert(topKeys, topValues, pool, delta));
+            } else {
+                for (int i = 0; i < ids.length; i++) {
+                    insert(topKeys, topValues, keys[i], delta(current, i));
+                }
+            }
+            for (int rank = 0; rank < top && topKeys[rank] != null; rank++) {
+                ranks[rank].set(topValues[rank] * 100d / elapsed, Tags.singleton(tagKey, topKeys[rank]));
+            }
+        }
+
+        private long delta(long[] current, int i) {
+            // -1 when the thread died, or was unknown at the previous feed
+            return current[i] < 0 || cpuTimes[i] < 0 ? 0 : current[i] - cpuTimes[i];
+        }
+
+        /**
+         * Insert in the top values, kept sorted in decreasing order; values of 0 are ignored
+         */
+        private void insert(String[] topKeys, long[] topValues, String key, long value) {
+            if (value <= 0 || value <= topValues[top - 1]) {
+                return;
+            }
+            int pos = top - 1;
+            while (pos > 0 && topValues[pos - 1] < value) {
+                topKeys[pos] = topKeys[pos - 1];
+                topValues[pos] = topValues[pos - 1];
+                pos--;
+            }
+            topKeys[pos] = key;
+            topValues[pos] = value;
+        }
+    }
+
+    public static HotThreadsMonitoring create() {
+        return new HotThreadsMonitoring(Tags.empty(), 5, false, 10);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Tags tags = Tags.empty();
+        private int top = 5;
+        private boolean groupByPool;
+        private int refreshEvery = 10;
+
+        private Builder() {
+        }
+
+        /**
+         * Number of hot threads (or pools) sent at each feed, 5 by default
+         */
+        public Builder top(int top) {
+            if (top <= 0) {
+                throw new IllegalArgumentException("Invalid top: " + top + ", must be positive");
+            }
+            this.top = top;
+            return this;
+        }
+
+        /**
+         * Group threads by name pattern, where digits are replaced with '*'
+         */
+        public Builder groupByPool() {
+            this.groupByPool = true;
+            return this;
+        }
+
+        /**
+         * Refresh the cached thread ids every given number of feeds, 10 by default. Threads started since the previous
+         * refresh are not measured until the next one.
+         */
+        public Builder refreshEvery(int feeds) {
+            if (feeds <= 0) {
+                throw new IllegalArgumentException("Invalid refresh: " + feeds + ", must be positive");
+            }
+            this.refreshEvery = feeds;
+            return this;
+        }
+
+        public Builder withTags(Tags tags) {
+            this.tags.add(tags);
+            return this;
+        }
+
+        public Builder withTag(String key, String value) {
+            this.tags.add(Tag.keyValue(key, value));
+            return this;
+        }
+
+        public HotThreadsMonitoring build() {
+            return new HotThreadsMonitoring(tags, top, groupByPool, refreshEvery);
+        }
+    }
+}
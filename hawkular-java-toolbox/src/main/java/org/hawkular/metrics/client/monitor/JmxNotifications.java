@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.hawkular.metrics.client.HawkularClient;
+import org.hawkular.metrics.client.MetricsBatch;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Building blocks for {@link MonitoringSession.EventFeeder}s based on JMX notifications
+ * @author Joel Takvorian
+ */
+public final class JmxNotifications {
+
+    private JmxNotifications() {
+    }
+
+    /**
+     * Listen to the notifications of some MBeans while subscribed
+     * @param emitters the MBeans; those that don't emit notifications are ignored
+     * @param filter notifications filter, or null to accept all of them
+     * @param listener notifications listener; it is called on JMX threads, and must be fast
+     */
+    public static MonitoringSession.EventFeeder listen(Collection<?> emitters,
+                                                       NotificationFilter filter,
+                                                       NotificationListener listener) {
+        List<NotificationEmitter> notificationEmitters = new ArrayList<>();
+        for (Object emitter : emitters) {
+            if (emitter instanceof NotificationEmitter) {
+                notificationEmitters.add((NotificationEmitter) emitter);
+            }
+        }
+        return new MonitoringSession.EventFeeder() {
+            @Override public void subscribe() {
+                notificationEmitters.forEach(emitter -> emitter.addNotificationListener(listener, filter, null));
+            }
+
+            @Override public void unsubscribe() {
+                for (NotificationEmitter emitter : notificationEmitters) {
+                    try {
+                        emitter.removeNotificationListener(listener, filter, null);
+                    } catch (ListenerNotFoundException e) {
+                        // Not subscribed
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Listen to the notifications of garbage collectors, sent after each collection
+     * @param listener collections listener, called with the time of the start of the collection, in milliseconds
+     *                 since epoch; it is called on JMX threads, and must be fast
+     */
+    public static MonitoringSession.EventFeeder garbageCollections(GcListener listener) {
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        return listen(ManagementFactory.getGarbageCollectorMXBeans(),
+                n -> GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(n.getType()),
+                (n, handback) -> {
+                    GarbageCollectionNotificationInfo info =
+                            GarbageCollectionNotificationInfo.from((CompositeData) n.getUserData());
+                    listener.onCollection(jvmStart + info.getGcInfo().getStartTime(), info);
+                });
+    }
+
+    /**
+     * Run a feed in a batch with the given timestamp. Events are fed this way so that their datapoints have the exact
+     * time of the event. Datapoints are queued, and sent at the next report interval of the client, from its reporting
+     * thread (see {@link HawkularClient#sendLater(MetricsBatch)}): the JMX thread never waits for a request.
+     */
+    public static void feedAt(HawkularClient sessionBox, long timestamp, Runnable feed) {
+        MetricsBatch batch = sessionBox.openBatch(timestamp);
+        batch.run(feed);
+        sessionBox.sendLater(batch);
+    }
+
+    @FunctionalInterface
+    public interface GcListener {
+        void onCollection(long timestamp, GarbageCollectionNotificationInfo info);
+    }
+}
@@ -16,11 +16,16 @@
  */
 package org.hawkular.metrics.client.monitor;
 
+import java.lang.management.BufferPoolMXBean;
 import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.lang.management.MemoryUsage;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.hawkular.metrics.client.HawkularClient;
 import org.hawkular.metrics.client.model.Gauge;
@@ -30,6 +35,18 @@ import org.hawkular.metrics.client.model.Tags;
 import com.sun.management.OperatingSystemMXBean;
 
 /**
+ * Memory monitoring:
+ * <ul>
+ *     <li>"monitor.memory.system.free" and "monitor.memory.system.swap.free": free physical memory and swap, in
+ *     bytes</li>
+ *     <li>"monitor.memory.process.heap", "monitor.memory.process.heap.committed" and
+ *     "monitor.memory.process.heap.max": heap usage, in bytes; same for non-heap with
+ *     "monitor.memory.process.nonheap"</li>
+ *     <li>"monitor.memory.pool.[pool].used", ".committed" and ".max": usage of each memory pool (eden, survivor, old,
+ *     metaspace, code cache...), with metric tags "pool" and "type" (heap or non_heap); and
+ *     "monitor.memory.pool.[pool].collection.used": usage after the last collection, for pools that support it</li>
+ *     <li>"monitor.memory.buffer.[direct|mapped].used", ".capacity" and ".count": buffer pools usage</li>
+ * </ul>
  * @author Joel Takvorian
  */
 public class MemoryMonitoring implements MonitoringSession.FeederSet {
@@ -43,17 +60,64 @@ public class MemoryMonitoring implements MonitoringSession.FeederSet {
     @Override
     public Collection<MonitoringSession.Feeder> feeds(HawkularClient sessionBox) {
         OperatingSystemMXBean operatingSystemMXBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
-        MemoryUsage memoryUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
         List<MonitoringSession.Feeder> feeds = new ArrayList<>();
         Gauge sysFree = sessionBox.gauge("monitor.memory.system.free", tags);
         feeds.add(() -> sysFree.set(operatingSystemMXBean.getFreePhysicalMemorySize()));
         Gauge sysSwapFree = sessionBox.gauge("monitor.memory.system.swap.free", tags);
         feeds.add(() -> sysSwapFree.set(operatingSystemMXBean.getFreeSwapSpaceSize()));
-        Gauge procHeap = sessionBox.gauge("monitor.memory.process.heap", tags);
-        feeds.add(() -> procHeap.set(memoryUsage.getUsed()));
+        feeds.add(usageFeeder(sessionBox, "monitor.memory.process.heap", "", tags, memoryMXBean::getHeapMemoryUsage));
+        feeds.add(usageFeeder(sessionBox, "monitor.memory.process.nonheap", "", tags,
+                memoryMXBean::getNonHeapMemoryUsage));
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String base = "monitor.memory.pool." + MetricNames.segment(pool.getName());
+            Tags poolTags = Tags.from(tags, Tags.from(
+                    Tag.keyValue("pool", pool.getName()),
+                    Tag.keyValue("type", pool.getType() == MemoryType.HEAP ? "heap" : "non_heap")));
+            feeds.add(usageFeeder(sessionBox, base, ".used", poolTags, pool::getUsage));
+            if (pool.isCollectionUsageThresholdSupported()) {
+                Gauge collectionUsed = sessionBox.gauge(base + ".collection.used", poolTags);
+                feeds.add(() -> {
+                    MemoryUsage usage = pool.getCollectionUsage();
+                    if (usage != null) {
+                        collectionUsed.set(usage.getUsed());
+                    }
+                });
+            }
+        }
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            String base = "monitor.memory.buffer." + MetricNames.segment(pool.getName());
+            Tags poolTags = Tags.from(tags, Tags.singleton("pool", pool.getName()));
+            Gauge used = sessionBox.gauge(base + ".used", poolTags);
+            Gauge capacity = sessionBox.gauge(base + ".capacity", poolTags);
+            Gauge count = sessionBox.gauge(base + ".count", poolTags);
+            feeds.add(() -> {
+                used.set(pool.getMemoryUsed());
+                capacity.set(pool.getTotalCapacity());
+                count.set(pool.getCount());
+            });
+        }
         return feeds;
     }
 
+    /**
+     * Feeds used, committed and max (when defined) memory. Usage is read at each feed: it's a snapshot.
+     */
+    private static MonitoringSession.Feeder usageFeeder(HawkularClient sessionBox, String base, String usedSuffix,
+                                                       Tags tags, Supplier<MemoryUsage> usage) {
+        Gauge used = sessionBox.gauge(base + usedSuffix, tags);
+        Gauge committed = sessionBox.gauge(base + ".committed", tags);
+        Gauge max = sessionBox.gauge(base + ".max", tags);
+        return () -> {
+            MemoryUsage memoryUsage = usage.get();
+            used.set(memoryUsage.getUsed());
+            committed.set(memoryUsage.getCommitted());
+            if (memoryUsage.getMax() >= 0) {
+                max.set(memoryUsage.getMax());
+            }
+        };
+    }
+
     public static MemoryMonitoring create() {
         return new MemoryMonitoring(Tags.empty());
     }
@@ -18,27 +18,232 @@ package org.hawkular.metrics.client.monitor;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hawkular.metrics.client.HawkularClient;
+import org.hawkular.metrics.client.MetricsBatch;
+import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Runs feeders periodically.<br/>
+ * By default, each feeder is scheduled on its own. In aligned mode (see {@link Builder#aligned()}), a single tick is
+ * fired on period boundaries: all feeders are run, their datapoints are stamped with the tick timestamp and sent in
+ * a single request. Ticks that are missed because the previous one overran are skipped, not caught up.<br/>
+ * In adaptive mode (see {@link Builder#adaptive(AdaptivePeriod)}), each feeder has its own period, that adapts to
+ * the variations of its values. The current period of each feeder is sent as the "monitor.session.period" gauge, in
+ * milliseconds, tagged with the name of the first metric fed by the feeder.<br/>
+ * Besides polling feeders, a session can run {@link EventFeeder}s, that push events as they happen (e.g. JMX
+ * notifications, see {@link JmxNotifications}): they are subscribed when the session starts, and unsubscribed when
+ * it stops.
  * @author Joel Takvorian
  */
 public class MonitoringSession {
 
+    private static final Logger LOG = LoggerFactory.getLogger(MonitoringSession.class);
+    static final String PERIOD_METRIC = "monitor.session.period";
+
     private final ScheduledExecutorService executorService;
+    private final ExecutorService feedersExecutor;
+    private final HawkularClient sessionBox;
+    private final long period;
+    private final List<Feeder> feeds;
+    private final AtomicLong skippedTicks = new AtomicLong();
+    private final List<EventFeeder> eventFeeds = new ArrayList<>();
 
     public MonitoringSession(long frequency, TimeUnit timeUnit, int threadPoolSize, List<Feeder> feeds) {
-        executorService = Executors.newScheduledThreadPool(threadPoolSize);
+        executorService = newScheduler(threadPoolSize);
+        feedersExecutor = null;
+        sessionBox = null;
+        period = timeUnit.toMillis(frequency);
+        this.feeds = feeds;
         feeds.forEach(feed -> executorService.scheduleAtFixedRate(feed::feed, 0, frequency, timeUnit));
     }
 
+    private MonitoringSession(HawkularClient sessionBox, long period, int threadPoolSize, boolean parallel,
+                              List<Feeder> feeds) {
+        executorService = newScheduler(1);
+        feedersExecutor = parallel ? Executors.newFixedThreadPool(threadPoolSize) : null;
+        this.sessionBox = sessionBox;
+        this.period = Math.max(1, period);
+        this.feeds = feeds;
+        if (!feeds.isEmpty()) {
+            scheduleNextTick(System.currentTimeMillis());
+        }
+    }
+
+    private MonitoringSession(HawkularClient sessionBox, long period, int threadPoolSize, AdaptivePeriod adaptivePeriod,
+                              List<Feeder> feeds) {
+        executorService = newScheduler(threadPoolSize);
+        feedersExecutor = null;
+        this.sessionBox = sessionBox;
+        this.period = adaptivePeriod.clamp(period);
+        this.feeds = feeds;
+        if (!feeds.isEmpty()) {
+            Gauge periodGauge = sessionBox.gauge(PERIOD_METRIC);
+            feeds.forEach(feed -> schedule(new AdaptiveFeeder(feed, adaptivePeriod, periodGauge, this.period), 0));
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newScheduler(int threadPoolSize) {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(threadPoolSize);
+        // On stop, pending runs are cancelled, only running ones complete
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return scheduler;
+    }
+
+    private void schedule(AdaptiveFeeder feeder, long delay) {
+        try {
+            executorService.schedule(feeder::run, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Stopped
+        }
+    }
+
+    private void scheduleNextTick(long lastTimestamp) {
+        long now = System.currentTimeMillis();
+        long next = now - now % period + period;
+        long skipped = (next - lastTimestamp) / period - 1;
+        if (skipped > 0) {
+            skippedTicks.addAndGet(skipped);
+        }
+        try {
+            executorService.schedule(() -> tick(next), next - now, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Stopped
+        }
+    }
+
+    private void tick(long timestamp) {
+        MetricsBatch batch = sessionBox.openBatch(timestamp);
+        try {
+            if (feedersExecutor == null) {
+                batch.run(() -> feeds.forEach(MonitoringSession::feed));
+            } else {
+                List<Callable<Void>> tasks = new ArrayList<>(feeds.size());
+                for (Feeder feeder : feeds) {
+                    tasks.add(() -> {
+                        batch.run(() -> feed(feeder));
+                        return null;
+                    });
+                }
+                feedersExecutor.invokeAll(tasks);
+            }
+            batch.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            LOG.warn("Monitoring tick failed", e);
+        }
+        scheduleNextTick(timestamp);
+    }
+
+    private static void feed(Feeder feeder) {
+        try {
+            feeder.feed();
+        } catch (RuntimeException e) {
+            LOG.warn("Monitoring feeder failed", e);
+        }
+    }
+
+    /**
+     * Feeder with its own period, adapted after each run from the variations of the values it fed
+     */
+    private final class AdaptiveFeeder {
+        private final Feeder feeder;
+        private final AdaptivePeriod adaptivePeriod;
+        private final Gauge periodGauge;
+        // Only accessed from the running feeder, runs don't overlap
+        private final Map<String, Double> lastValues = new HashMap<>();
+        private long currentPeriod;
+        private Tags periodTags;
+
+        private AdaptiveFeeder(Feeder feeder, AdaptivePeriod adaptivePeriod, Gauge periodGauge, long period) {
+            this.feeder = feeder;
+            this.adaptivePeriod = adaptivePeriod;
+            this.periodGauge = periodGauge;
+            this.currentPeriod = period;
+        }
+
+        private void run() {
+            try {
+                MetricsBatch batch = sessionBox.openBatch(System.currentTimeMillis());
+                batch.run(() -> feed(feeder));
+                long[] next = {Long.MAX_VALUE};
+                batch.forEach((metric, dp) -> {
+                    if (periodTags == null) {
+                        periodTags = Tags.singleton("feeder", metric.getName());
+                    }
+                    if (dp.getData() instanceof Number) {
+                        double value = ((Number) dp.getData()).doubleValue();
+                        String key = dp.getDpTags() == null ? metric.getName() : metric.getName() + dp.getDpTags();
+                        Double previous = lastValues.put(key, value);
+                        if (previous != null) {
+                            next[0] = Math.min(next[0], adaptivePeriod.next(currentPeriod, previous, value));
+                        }
+                    }
+                });
+                currentPeriod = next[0] == Long.MAX_VALUE ? adaptivePeriod.grow(currentPeriod) : next[0];
+                if (periodTags != null) {
+                    batch.run(() -> periodGauge.set(currentPeriod, periodTags));
+                }
+                batch.flush();
+            } catch (RuntimeException e) {
+                LOG.warn("Monitoring feeder failed", e);
+            }
+            schedule(this, currentPeriod);
+        }
+    }
+
+    /**
+     * Number of ticks skipped so far in aligned mode, because the previous tick overran
+     */
+    public long getSkippedTicks() {
+        return skippedTicks.get();
+    }
+
+    private synchronized void subscribe(List<EventFeeder> events) {
+        for (EventFeeder event : events) {
+            event.subscribe();
+            eventFeeds.add(event);
+        }
+    }
+
+    /**
+     * Stop the session. Feeders that are already running are given a chance to complete, so that they don't send
+     * partial data.
+     */
     public void stop() {
-        executorService.shutdownNow();
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (feedersExecutor != null) {
+            feedersExecutor.shutdownNow();
+        }
+        synchronized (this) {
+            eventFeeds.forEach(EventFeeder::unsubscribe);
+            eventFeeds.clear();
+        }
     }
 
     public static class Builder {
@@ -46,7 +251,11 @@ public class MonitoringSession {
         private final long frequency;
         private final TimeUnit timeUnit;
         private final List<Feeder> feeds = new ArrayList<>();
+        private final List<EventFeeder> events = new ArrayList<>();
         private int threadPoolSize = 5;
+        private boolean aligned;
+        private boolean parallel;
+        private AdaptivePeriod adaptivePeriod;
 
         public Builder(HawkularClient sessionBox, long frequency, TimeUnit timeUnit) {
             this.sessionBox = sessionBox;
@@ -60,7 +269,14 @@ public class MonitoringSession {
         }
 
         public Builder feeds(FeederSet feederSet) {
-            this.feeds.addAll(feederSet.feeds(sessionBox));
+            Feeders feeders = feederSet.feeders(sessionBox);
+            this.feeds.addAll(feeders.getFeeds());
+            this.events.addAll(feeders.getEventFeeds());
+            return this;
+        }
+
+        public Builder event(EventFeeder event) {
+            events.add(event);
             return this;
         }
 
@@ -69,8 +285,52 @@ public class MonitoringSession {
             return this;
         }
 
+        /**
+         * Run all feeders in a single tick per period, aligned on period boundaries, and send their datapoints in a
+         * single request, with the tick timestamp. Feeders run sequentially, unless {@link #parallel()} is set.
+         */
+        public Builder aligned() {
+            this.aligned = true;
+            return this;
+        }
+
+        /**
+         * In aligned mode, run the feeders of a tick in parallel, on a pool of {@link #threadPoolSize(int)} threads
+         */
+        public Builder parallel() {
+            this.parallel = true;
+            return this;
+        }
+
+        /**
+         * Give each feeder its own period, that adapts to the variations of its values. The session frequency is
+         * used as the initial period. Not compatible with {@link #aligned()}.
+         */
+        public Builder adaptive(AdaptivePeriod adaptivePeriod) {
+            this.adaptivePeriod = adaptivePeriod;
+            return this;
+        }
+
         public MonitoringSession start() {
-            return new MonitoringSession(frequency, timeUnit, threadPoolSize, feeds);
+            if (aligned && adaptivePeriod != null) {
+                throw new IllegalStateException("A monitoring session can't be both aligned and adaptive");
+            }
+            if (sessionBox.getInfo().isDisabled()) {
+                // Nothing would be reported anyway: don't even start feeding
+                return new MonitoringSession(frequency, timeUnit, threadPoolSize, new ArrayList<>());
+            }
+            MonitoringSession session;
+            if (adaptivePeriod != null) {
+                session = new MonitoringSession(sessionBox, timeUnit.toMillis(frequency), threadPoolSize,
+                        adaptivePeriod, feeds);
+            } else if (aligned) {
+                session = new MonitoringSession(sessionBox, timeUnit.toMillis(frequency), threadPoolSize, parallel,
+                        feeds);
+            } else {
+                session = new MonitoringSession(frequency, timeUnit, threadPoolSize, feeds);
+            }
+            session.subscribe(events);
+            return session;
         }
 
         public void run(Runnable r) {
@@ -80,11 +340,59 @@ public class MonitoringSession {
         }
     }
 
-    interface Feeder {
+    public interface Feeder {
         void feed();
     }
 
-    interface FeederSet {
+    /**
+     * Feeder that pushes events to metrics as they happen, instead of being polled
+     */
+    public interface EventFeeder {
+        /**
+         * Start listening to events
+         */
+        void subscribe();
+
+        /**
+         * Stop listening to events
+         */
+        void unsubscribe();
+    }
+
+    public interface FeederSet {
         Collection<Feeder> feeds(HawkularClient sessionBox);
+
+        default Collection<EventFeeder> eventFeeds(HawkularClient sessionBox) {
+            return Collections.emptyList();
+        }
+
+        /**
+         * Create all the feeders of a session. Sets whose polling and event feeders share state override it, so that
+         * this state is created once per session and handed to both.
+         */
+        default Feeders feeders(HawkularClient sessionBox) {
+            return new Feeders(feeds(sessionBox), eventFeeds(sessionBox));
+        }
+    }
+
+    /**
+     * Polling and event feeders of a session, created together by a {@link FeederSet}
+     */
+    public static final class Feeders {
+        private final Collection<Feeder> feeds;
+        private final Collection<EventFeeder> eventFeeds;
+
+        public Feeders(Collection<Feeder> feeds, Collection<EventFeeder> eventFeeds) {
+            this.feeds = feeds;
+            this.eventFeeds = eventFeeds;
+        }
+
+        public Collection<Feeder> getFeeds() {
+            return feeds;
+        }
+
+        public Collection<EventFeeder> getEventFeeds() {
+            return eventFeeds;
+        }
     }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.monitor;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.openmbean.CompositeData;
+
+import org.hawkular.metrics.client.HawkularClient;
+import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.Tag;
+import org.hawkular.metrics.client.model.Tags;
+
+/**
+ * Event-driven monitoring based on JMX notifications, at no polling cost. Datapoints are queued on the JMX thread,
+ * and sent at the next report interval of the client:
+ * <ul>
+ *     <li>"monitor.gc.[collector].pause": duration of each garbage collection in milliseconds, at the time it started,
+ *     with metric tag "collector" (as in {@link GCMonitoring}, whose "monitor.gc.[collector].pause.*" gauges are the
+ *     distribution of the same pauses), and datapoint tags "action" and "cause"</li>
+ *     <li>"monitor.memory.threshold": used bytes of a heap memory pool when it crosses its usage threshold ("type"
+ *     tag "usage") or its collection usage threshold ("type" tag "collection"), with datapoint tag "pool". Only when
+ *     a threshold is set with {@link Builder#usageThreshold(double)}</li>
+ * </ul>
+ * @author Joel Takvorian
+ */
+public class NotificationMonitoring implements MonitoringSession.FeederSet {
+
+    private final Tags tags;
+    private final double usageThreshold;
+
+    private NotificationMonitoring(Tags tags, double usageThreshold) {
+        this.tags = tags;
+        this.usageThreshold = usageThreshold;
+    }
+
+    @Override
+    public Collection<MonitoringSession.Feeder> feeds(HawkularClient sessionBox) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<MonitoringSession.EventFeeder> eventFeeds(HawkularClient sessionBox) {
+        List<MonitoringSession.EventFeeder> events = new ArrayList<>();
+        Map<String, Gauge> pauses = new HashMap<>();
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            pauses.put(bean.getName(), sessionBox.gauge("monitor.gc." + MetricNames.segment(bean.getName()) + ".pause",
+                    Tags.from(tags, Tags.singleton("collector", bean.getName()))));
+        }
+        events.add(JmxNotifications.garbageCollections((timestamp, info) -> {
+            Gauge pause = pauses.get(info.getGcName());
+            if (pause == null) {
+                return;
+            }
+            Tags dpTags = Tags.from(
+                    Tag.keyValue("action", info.getGcAction()),
+                    Tag.keyValue("cause", info.getGcCause()));
+            JmxNotifications.feedAt(sessionBox, timestamp, () -> pause.set(info.getGcInfo().getDuration(), dpTags));
+        }));
+        if (usageThreshold > 0) {
+            events.add(new ThresholdsFeeder(sessionBox, sessionBox.gauge("monitor.memory.threshold", tags)));
+        }
+        return events;
+    }
+
+    /**
+     * Sets usage thresholds on heap pools while subscribed, and listens to their crossing
+     */
+    private final class ThresholdsFeeder implements MonitoringSession.EventFeeder {
+        private final Map<MemoryPoolMXBean, long[]> previousThresholds = new HashMap<>();
+        private final MonitoringSession.EventFeeder listener;
+
+        private ThresholdsFeeder(HawkularClient sessionBox, Gauge threshold) {
+            listener = JmxNotifications.listen(Collections.singleton(ManagementFactory.getMemoryMXBean()),
+                    n -> MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(n.getType())
+                            || MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(n.getType()),
+                    (n, handback) -> {
+                        MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) n.getUserData());
+                        Tags dpTags = Tags.from(
+                                Tag.keyValue("pool", info.getPoolName()),
+                                Tag.keyValue("type", MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED
+                                        .equals(n.getType()) ? "usage" : "collection"));
+                        JmxNotifications.feedAt(sessionBox, n.getTimeStamp(),
+                                () -> threshold.set(info.getUsage().getUsed(), dpTags));
+                    });
+        }
+
+        @Override public synchronized void subscribe() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                long max = pool.getUsage().getMax();
+                if (pool.getType() != MemoryType.HEAP || max <= 0) {
+                    continue;
+                }
+                long threshold = (long) (max * usageThreshold);
+                long[] previous = new long[] {-1, -1};
+                if (pool.isUsageThresholdSupported()) {
+                    previous[0] = pool.getUsageThreshold();
+                    pool.setUsageThreshold(threshold);
+                }
+                if (pool.isCollectionUsageThresholdSupported()) {
+                    previous[1] = pool.getCollectionUsageThreshold();
+                    pool.setCollectionUsageThreshold(threshold);
+                }
+                previousThresholds.put(pool, previous);
+            }
+            listener.subscribe();
+        }
+
+        @Override public synchronized void unsubscribe() {
+            listener.unsubscribe();
+            previousThresholds.forEach((pool, previous) -> {
+                if (previous[0] >= 0) {
+                    pool.setUsageThreshold(previous[0]);
+                }
+                if (previous[1] >= 0) {
+                    pool.setCollectionUsageThreshold(previous[1]);
+                }
+            });
+            previousThresholds.clear();
+        }
+    }
+
+    public static NotificationMonitoring create() {
+        return new NotificationMonitoring(Tags.empty(), 0);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Tags tags = Tags.empty();
+        private double usageThreshold;
+
+        private Builder() {
+        }
+
+        /**
+         * Set usage thresholds on heap memory pools, as a ratio of their max size (e.g. 0.9), while the session runs.
+         * Note that thresholds are global to the JVM: previous thresholds are restored when the session stops.
+         */
+        public Builder usageThreshold(double ratio) {
+            if (ratio <= 0 || ratio > 1) {
+                throw new IllegalArgumentException("Invalid usage threshold: " + ratio + ", must be in ]0, 1]");
+            }
+            this.usageThreshold = ratio;
+            return this;
+        }
+
+        public Builder withTags(Tags tags) {
+            this.tags.add(tags);
+            return this;
+        }
+
+        public Builder withTag(String key, String value) {
+            this.tags.add(Tag.keyValue(key, value));
+            return this;
+        }
+
+        public NotificationMonitoring build() {
+            return new NotificationMonitoring(tags, usageThreshold);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.client.HawkularClient;
+import org.hawkular.metrics.client.model.Counter;
+import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.Tag;
+import org.hawkular.metrics.client.model.Tags;
+
+/**
+ * Sampling profiler: while the session runs, the top frame of each runnable thread is sampled on a dedicated thread,
+ * at the sampling period (see {@link Builder#samplingPeriod(long, TimeUnit)}). At each feed, the hottest methods of
+ * the elapsed interval (or packages, see {@link Builder#byPackage()}) are sent as counters of samples:
+ * <ul>
+ *     <li>"monitor.profiler.method.[method]", with metric tag "method" (or "monitor.profiler.package.[package]", with
+ *     metric tag "package"); methods beyond {@link Builder#maxMethods(int)} are counted in
+ *     "monitor.profiler.method.other"</li>
+ *     <li>"monitor.profiler.samples": all samples of runnable threads</li>
+ *     <li>"monitor.profiler.overhead": time spent sampling, in percent of one core</li>
+ * </ul>
+ * Only the top frame of each thread is captured, which is much cheaper than full thread dumps. Sampling overhead is
+ * capped by {@link Builder#maxOverhead(double)}: the sampling period is stretched when a sample takes too long, and
+ * samples are skipped when they would exceed the budget of the current feed interval (which holds as long as a single
+ * sample takes less than this ratio of the feed period).
+ * @author Joel Takvorian
+ */
+public class ProfilerMonitoring implements MonitoringSession.FeederSet {
+
+    private static final String OTHER = "other";
+
+    private final Tags tags;
+    private final long samplingPeriod;
+    private final boolean byPackage;
+    private final int top;
+    private final int maxMethods;
+    private final double maxOverhead;
+    private final String base;
+    private final String tagKey;
+
+    private ProfilerMonitoring(Tags tags, long samplingPeriod, boolean byPackage, int top, int maxMethods,
+                               double maxOverhead) {
+        this.tags = tags;
+        this.samplingPeriod = samplingPeriod;
+        this.byPackage = byPackage;
+        this.top = top;
+        this.maxMethods = maxMethods;
+        this.maxOverhead = maxOverhead;
+        this.base = byPackage ? "monitor.profiler.package." : "monitor.profiler.method.";
+        this.tagKey = byPackage ? "package" : "method";
+    }
+
+    /**
+     * Not supported: the feeder reads the samples of its session's sampler, use {@link #feeders(HawkularClient)}
+     */
+    @Override
+    public Collection<MonitoringSession.Feeder> feeds(HawkularClient sessionBox) {
+        throw new UnsupportedOperationException("The profiler feeder needs its sampler, use feeders() instead");
+    }
+
+    /**
+     * Not supported: the sampler feeds the samples to its session's feeder, use {@link #feeders(HawkularClient)}
+     */
+    @Override
+    public Collection<MonitoringSession.EventFeeder> eventFeeds(HawkularClient sessionBox) {
+        throw new UnsupportedOperationException("The profiler sampler needs its feeder, use feeders() instead");
+    }
+
+    @Override
+    public MonitoringSession.Feeders feeders(HawkularClient sessionBox) {
+        Profile profile = new Profile();
+        return new MonitoringSession.Feeders(feeds(sessionBox, profile),
+                Collections.singletonList(new Sampler(profile)));
+    }
+
+    private Collection<MonitoringSession.Feeder> feeds(HawkularClient sessionBox, Profile profile) {
+        Counter samplesCounter = sessionBox.counter("monitor.profiler.samples", tags);
+        Gauge overhead = sessionBox.gauge("monitor.profiler.overhead", tags);
+        // Only accessed from the feeder
+        Map<String, Counter> counters = new HashMap<>();
+        long[] lastFeed = {0};
+        return Collections.singletonList(() -> {
+            Map<String, long[]> intervalHits;
+            long intervalSamples;
+            long intervalSamplingTime;
+            long now = System.nanoTime();
+            synchronized (profile) {
+                intervalHits = profile.hits;
+                intervalSamples = profile.samples;
+                intervalSamplingTime = profile.samplingTime;
+                profile.hits = new HashMap<>();
+                profile.samples = 0;
+                profile.samplingTime = 0;
+                profile.windowStart = now;
+            }
+            if (lastFeed[0] != 0 && now > lastFeed[0]) {
+                overhead.set(intervalSamplingTime * 100d / (now - lastFeed[0]));
+            }
+            lastFeed[0] = now;
+            if (intervalSamples == 0) {
+                return;
+            }
+            samplesCounter.inc(intervalSamples);
+            List<Map.Entry<String, long[]>> hottest = new ArrayList<>(intervalHits.entrySet());
+            hottest.sort((e1, e2) -> Long.compare(e2.getValue()[0], e1.getValue()[0]));
+            for (int i = 0; i < Math.min(top, hottest.size()); i++) {
+                Map.Entry<String, long[]> entry = hottest.get(i);
+                counter(sessionBox, counters, entry.getKey()).inc(entry.getValue()[0]);
+            }
+        });
+    }
+
+    private Counter counter(HawkularClient sessionBox, Map<String, Counter> counters, String key) {
+        // Bound the number of metrics created over time
+        return counters.computeIfAbsent(bounded(counters, key), k -> sessionBox.counter(
+                base + k.replaceAll("[^A-Za-z0-9_.$]", "_"),
+                Tags.from(tags, Tags.singleton(tagKey, k))));
+    }
+
+    /**
+     * @return the key itself if it's already in the map or if there's room for it, leaving one entry for "other"
+     */
+    private String bounded(Map<String, ?> map, String key) {
+        return map.containsKey(key) || map.size() < maxMethods - 1 ? key : OTHER;
+    }
+
+    /**
+     * Samples of the current feed interval, written by the sampler and read by the feeder of a session
+     */
+    private static final class Profile {
+        // Guarded by this
+        private Map<String, long[]> hits = new HashMap<>();
+        private long samples;
+        private long samplingTime;
+        private long windowStart = System.nanoTime();
+    }
+
+    /**
+     * Samples runnable threads on a dedicated thread, while subscribed
+     */
+    private final class Sampler implements MonitoringSession.EventFeeder {
+        private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        private final Profile profile;
+        private ScheduledExecutorService executor;
+        private long samplerThreadId;
+        // Duration of the previous sample, only accessed from the sampler thread
+        private long lastElapsed;
+
+        private Sampler(Profile profile) {
+            this.profile = profile;
+        }
+
+        @Override public synchronized void subscribe() {
+            if (executor != null) {
+                return;
+            }
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "hawkular-profiler");
+                thread.setDaemon(true);
+                samplerThreadId = thread.getId();
+                return thread;
+            });
+            schedule(executor, samplingPeriod);
+        }
+
+        @Override public synchronized void unsubscribe() {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+
+        private void schedule(ScheduledExecutorService executor, long delay) {
+            try {
+                executor.schedule(() -> schedule(executor, sample()), delay, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // Stopped
+            }
+        }
+
+        /**
+         * @return delay before the next sample, in nanoseconds
+         */
+        private long sample() {
+            long start = System.nanoTime();
+            synchronized (profile) {
+                // Skip the sample when it would exceed the overhead budget of the current feed interval; the first one
+                // always runs, so that sampling goes on even when a single sample exceeds the budget
+                if (profile.samplingTime > 0
+                        && profile.samplingTime + lastElapsed > maxOverhead * (start - profile.windowStart)) {
+                    return samplingPeriod;
+                }
+            }
+            ThreadInfo[] infos = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), 1);
+            Map<String, Integer> sampleHits = new HashMap<>();
+            int runnable = 0;
+            for (ThreadInfo info : infos) {
+                if (info == null || info.getThreadId() == samplerThreadId
+                        || info.getThreadState() != Thread.State.RUNNABLE || info.getStackTrace().length == 0) {
+                    continue;
+                }
+                runnable++;
+                sampleHits.merge(key(info.getStackTrace()[0]), 1, Integer::sum);
+            }
+            long elapsed = System.nanoTime() - start;
+            lastElapsed = elapsed;
+            synchronized (profile) {
+                sampleHits.forEach((key, n) -> {
+                    // Bound the memory used by the aggregation
+                    long[] count = profile.hits.computeIfAbsent(bounded(profile.hits, key), k -> new long[1]);
+                    count[0] += n;
+                });
+                profile.samples += runnable;
+                profile.samplingTime += elapsed;
+            }
+            // Stretch the period so that sampling stays under the max overhead
+            return Math.max(samplingPeriod, (long) (elapsed / maxOverhead));
+        }
+
+        private String key(StackTraceElement frame) {
+            String className = frame.getClassName();
+            if (byPackage) {
+                int dot = className.lastIndexOf('.');
+                return dot < 0 ? "(default)" : className.substring(0, dot);
+            }
+            return className + "." + frame.getMethodName();
+        }
+    }
+
+    public static ProfilerMonitoring create() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Tags tags = Tags.empty();
+        private long samplingPeriod = TimeUnit.MILLISECONDS.toNanos(50);
+        private boolean byPackage;
+        private int top = 10;
+        private int maxMethods = 200;
+        private double maxOverhead = 0.01;
+
+        private Builder() {
+        }
+
+        /**
+         * Period between two samples, 50ms by default. It may be stretched to respect {@link #maxOverhead(double)}.
+         */
+        public Builder samplingPeriod(long period, TimeUnit unit) {
+            if (period <= 0) {
+                throw new IllegalArgumentException("Invalid sampling period: " + period + ", must be positive");
+            }
+            this.samplingPeriod = unit.toNanos(period);
+            return this;
+        }
+
+        /**
+         * Aggregate samples by package rather than by method
+         */
+        public Builder byPackage() {
+            this.byPackage = true;
+            return this;
+        }
+
+        /**
+         * Number of hottest methods sent at each feed, 10 by default
+         */
+        public Builder top(int top) {
+            if (top <= 0) {
+                throw new IllegalArgumentException("Invalid top: " + top + ", must be positive");
+            }
+            this.top = top;
+            return this;
+        }
+
+        /**
+         * Max number of distinct methods aggregated per interval, and of counters created, 200 by default, including
+         * "other" where the samples of the methods beyond are counted.
+         */
+        public Builder maxMethods(int maxMethods) {
+            if (maxMethods <= 0) {
+                throw new IllegalArgumentException("Invalid max methods: " + maxMethods + ", must be positive");
+            }
+            this.maxMethods = maxMethods;
+            return this;
+        }
+
+        /**
+         * Max time spent sampling, as a ratio of one core, 0.01 (1%) by default
+         */
+        public Builder maxOverhead(double ratio) {
+            if (ratio <= 0 || ratio > 1) {
+                throw new IllegalArgumentException("Invalid max overhead: " + ratio + ", must be in ]0, 1]");
+            }
+            this.maxOverhead = ratio;
+            return this;
+        }
+
+        public Builder withTags(Tags tags) {
+            this.tags.add(tags);
+            return this;
+        }
+
+        public Builder withTag(String key, String value) {
+            this.tags.add(Tag.keyValue(key, value));
+            return this;
+        }
+
+        public ProfilerMonitoring build() {
+            return new ProfilerMonitoring(tags, samplingPeriod, byPackage, top, maxMethods, maxOverhead);
+        }
+    }
+}
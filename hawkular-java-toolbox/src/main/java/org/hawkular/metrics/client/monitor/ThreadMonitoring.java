@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.client.HawkularClient;
+import org.hawkular.metrics.client.model.AvailabilityMetric;
+import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.Tag;
+import org.hawkular.metrics.client.model.Tags;
+
+/**
+ * Threads monitoring:
+ * <ul>
+ *     <li>"monitor.threads.live", "monitor.threads.daemon" and "monitor.threads.peak": threads count</li>
+ *     <li>"monitor.threads.state.[state]": threads count per {@link Thread.State}, with metric tag "state"</li>
+ *     <li>"monitor.threads.created.rate": threads started per second</li>
+ *     <li>"monitor.threads.deadlock": availability, down when deadlocked threads are found. Deadlock detection is
+ *     expensive, so it runs at a lower frequency than the session, see {@link Builder#deadlockDetection(long, TimeUnit)}
+ *     </li>
+ * </ul>
+ * @author Joel Takvorian
+ */
+public class ThreadMonitoring implements MonitoringSession.FeederSet {
+
+    private final Tags tags;
+    private final long deadlockDetectionPeriod;
+
+    private ThreadMonitoring(Tags tags, long deadlockDetectionPeriod) {
+        this.tags = tags;
+        this.deadlockDetectionPeriod = deadlockDetectionPeriod;
+    }
+
+    @Override
+    public Collection<MonitoringSession.Feeder> feeds(HawkularClient sessionBox) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        List<MonitoringSession.Feeder> feeds = new ArrayList<>();
+        Gauge live = sessionBox.gauge("monitor.threads.live", tags);
+        Gauge daemon = sessionBox.gauge("monitor.threads.daemon", tags);
+        Gauge peak = sessionBox.gauge("monitor.threads.peak", tags);
+        feeds.add(() -> {
+            live.set(threadMXBean.getThreadCount());
+            daemon.set(threadMXBean.getDaemonThreadCount());
+            peak.set(threadMXBean.getPeakThreadCount());
+        });
+        Map<Thread.State, Gauge> states = new EnumMap<>(Thread.State.class);
+        for (Thread.State state : Thread.State.values()) {
+            String name = state.name().toLowerCase(Locale.ROOT);
+            states.put(state, sessionBox.gauge("monitor.threads.state." + name,
+                    Tags.from(tags, Tags.singleton("state", name))));
+        }
+        feeds.add(() -> {
+            int[] counts = new int[Thread.State.values().length];
+            for (ThreadInfo info : threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds())) {
+                // Null when the thread is no longer alive
+                if (info != null) {
+                    counts[info.getThreadState().ordinal()]++;
+                }
+            }
+            states.forEach((state, gauge) -> gauge.set(counts[state.ordinal()]));
+        });
+        Gauge created = sessionBox.gauge("monitor.threads.created.rate", tags);
+        // Started threads count and time of the previous feed
+        long[] lastStarted = {-1, 0};
+        feeds.add(() -> reportCreated(threadMXBean, created, lastStarted));
+        if (deadlockDetectionPeriod > 0) {
+            AvailabilityMetric deadlock = sessionBox.availability("monitor.threads.deadlock", tags);
+            long[] lastDetection = {0};
+            feeds.add(() -> reportDeadlock(threadMXBean, deadlock, lastDetection));
+        }
+        return feeds;
+    }
+
+    private static void reportCreated(ThreadMXBean threadMXBean, Gauge created, long[] lastStarted) {
+        long now = System.nanoTime();
+        long started = threadMXBean.getTotalStartedThreadCount();
+        if (lastStarted[0] >= 0 && now > lastStarted[1]) {
+            created.set((started - lastStarted[0]) * 1e9 / (now - lastStarted[1]));
+        }
+        lastStarted[0] = started;
+        lastStarted[1] = now;
+    }
+
+    private void reportDeadlock(ThreadMXBean threadMXBean, AvailabilityMetric deadlock, long[] lastDetection) {
+        long now = System.nanoTime();
+        if (lastDetection[0] != 0 && now - lastDetection[0] < deadlockDetectionPeriod) {
+            return;
+        }
+        lastDetection[0] = now;
+        long[] deadlocked = threadMXBean.isSynchronizerUsageSupported()
+                ? threadMXBean.findDeadlockedThreads()
+                : threadMXBean.findMonitorDeadlockedThreads();
+        if (deadlocked == null) {
+            deadlock.up();
+        } else {
+            deadlock.down();
+        }
+    }
+
+    public static ThreadMonitoring create() {
+        return new ThreadMonitoring(Tags.empty(), TimeUnit.MINUTES.toNanos(1));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Tags tags = Tags.empty();
+        private long deadlockDetectionPeriod = TimeUnit.MINUTES.toNanos(1);
+
+        private Builder() {
+        }
+
+        /**
+         * Minimum time between two deadlock detections, 1 minute by default. Detection runs on the first session tick
+         * past that time. A period of 0 disables deadlock detection.
+         */
+        public Builder deadlockDetection(long period, TimeUnit unit) {
+            this.deadlockDetectionPeriod = unit.toNanos(period);
+            return this;
+        }
+
+        public Builder withTags(Tags tags) {
+            this.tags.add(tags);
+            return this;
+        }
+
+        public Builder withTag(String key, String value) {
+            this.tags.add(Tag.keyValue(key, value));
+            return this;
+        }
+
+        public ThreadMonitoring build() {
+            return new ThreadMonitoring(tags, deadlockDetectionPeriod);
+        }
+    }
+}
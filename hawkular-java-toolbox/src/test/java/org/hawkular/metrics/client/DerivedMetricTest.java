@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.client.model.Counter;
+import org.hawkular.metrics.client.model.DerivedMetric;
+import org.hawkular.metrics.client.model.Expression;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class DerivedMetricTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+
+    @Test
+    public void shouldParseAndEvaluateExpressions() {
+        Expression ratio = Expression.parse("cache.hit / (cache.hit + cache.miss)");
+        assertThat(ratio.getVariables()).containsExactly("cache.hit", "cache.miss");
+        assertThat(ratio.evaluate(new double[] {3, 1})).isEqualTo(0.75);
+
+        Expression percent = Expression.parse("100 * `2001.hal-errors` / 2001.hal.requests - -1.5");
+        assertThat(percent.getVariables()).containsExactly("2001.hal-errors", "2001.hal.requests");
+        assertThat(percent.evaluate(new double[] {5, 50})).isEqualTo(11.5);
+
+        assertThat(Expression.parse("2 + 3 * 4").evaluate(new double[0])).isEqualTo(14d);
+        assertThat(Expression.parse("(2 + 3) * 4").evaluate(new double[0])).isEqualTo(20d);
+        assertThat(Expression.parse("8 / 4 / 2").evaluate(new double[0])).isEqualTo(1d);
+    }
+
+    @Test
+    public void shouldOnlyReadPlainNumbersAsConstants() {
+        assertThat(Expression.parse("1e-3 * 1000").evaluate(new double[0])).isEqualTo(1d);
+        assertThat(Expression.parse("2.5E+2 - 1e2").evaluate(new double[0])).isEqualTo(150d);
+        assertThat(Expression.parse("NaN + Infinity + 10d + 5xx.errors").getVariables())
+                .containsExactly("NaN", "Infinity", "10d", "5xx.errors");
+    }
+
+    @Test
+    public void shouldNotComputeDerivedMetricsInLoggerClients() {
+        HawkularClientBuilder builder = HawkularFactory.load().builder()
+                .useHttpClient(uri -> new HttpClientMock())
+                .derivedMetric("cache.ratio", "cache.hit / cache.miss");
+        HawkularClient loggerClient = builder.buildLoggerClient("hal");
+        assertThat(loggerClient.getInfo().getDerivedMetrics()).isEmpty();
+        loggerClient.stop();
+    }
+
+    @Test
+    public void shouldRejectInvalidExpressions() {
+        assertThatThrownBy(() -> Expression.parse("a / (b + c")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("missing ')'");
+        assertThatThrownBy(() -> Expression.parse("a +")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unexpected end");
+        assertThatThrownBy(() -> Expression.parse("a b")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unexpected 'b'");
+        assertThatThrownBy(() -> HawkularFactory.load().builder().derivedMetric("x", "a * * b"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldReportDerivedMetrics() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .derivedMetric("2001.hal.cache.hitRatio", "2001.hal.cache.hit / (2001.hal.cache.hit + 2001.hal.cache.miss)")
+                .build();
+        // Already created from the builder: the expression given here is not used
+        DerivedMetric hitRatio = hwk.derivedMetric("2001.hal.cache.hitRatio", "0");
+        assertThat(hitRatio.getExpression().getVariables())
+                .containsExactly("2001.hal.cache.hit", "2001.hal.cache.miss");
+
+        // Metrics don't exist yet
+        hitRatio.report(1000L);
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+
+        Counter hit = hwk.counter("2001.hal.cache.hit");
+        Counter miss = hwk.counter("2001.hal.cache.miss");
+        hit.inc(3);
+        miss.inc();
+        client.clear();
+        hitRatio.report(2000L);
+        assertThat(client.getLastGaugeValues()).containsOnly(entry("2001.hal.cache.hitRatio", 0.75));
+
+        // Gauges, and division by zero
+        DerivedMetric perRequest = hwk.derivedMetric("2001.hal.bytesPerRequest", "2001.hal.bytes / 2001.hal.requests");
+        hwk.gauge("2001.hal.bytes").set(1000);
+        hwk.gauge("2001.hal.requests").set(0);
+        client.clear();
+        perRequest.report(3000L);
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+        hwk.gauge("2001.hal.requests").set(4);
+        client.clear();
+        perRequest.report(4000L);
+        assertThat(client.getLastGaugeValues()).containsOnly(entry("2001.hal.bytesPerRequest", 250d));
+    }
+}
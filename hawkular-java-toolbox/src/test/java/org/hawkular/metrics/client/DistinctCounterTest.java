@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.client.model.DistinctCounter;
+import org.hawkular.metrics.client.model.Tags;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class DistinctCounterTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+
+    @Test
+    public void shouldEstimateDistinctValues() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .build();
+        DistinctCounter users = hwk.distinctCounter("2001.hal.users");
+        for (int i = 0; i < 100_000; i++) {
+            users.offer("user-" + (i % 20_000));
+        }
+        users.report(1000L);
+        assertThat(client.getLastGaugeValues().get("2001.hal.users")).isCloseTo(20_000d, offset(20_000 * 0.05));
+
+        // Small cardinalities are almost exact
+        for (long i = 0; i < 10; i++) {
+            users.offer(i);
+            users.offer(i);
+        }
+        users.report(2000L);
+        assertThat(client.getLastGaugeValues().get("2001.hal.users")).isEqualTo(10d);
+
+        // Sketch is reset at each interval
+        users.report(3000L);
+        assertThat(client.getLastGaugeValues().get("2001.hal.users")).isEqualTo(0d);
+    }
+
+    @Test
+    public void shouldOfferConcurrently() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .build();
+        DistinctCounter sessions = hwk.distinctCounter("2001.hal.sessions", Tags.empty(), 14);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int start = t * 10_000;
+            threads[t] = new Thread(() -> {
+                // Each thread sees its own values, and half of its neighbour's
+                for (long i = start; i < start + 15_000; i++) {
+                    sessions.offer(i % 40_000);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        sessions.report(1000L);
+        assertThat(client.getLastGaugeValues().get("2001.hal.sessions")).isCloseTo(40_000d, offset(40_000 * 0.03));
+    }
+
+    @Test
+    public void shouldRejectInvalidPrecision() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        assertThatThrownBy(() -> hwk.distinctCounter("2001.hal.users", Tags.empty(), 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -17,16 +17,31 @@
 package org.hawkular.metrics.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import org.hawkular.metrics.client.model.Availability;
 import org.hawkular.metrics.client.model.AvailabilityMetric;
+import org.hawkular.metrics.client.model.AvailabilityPolicy;
 import org.hawkular.metrics.client.model.Counter;
+import org.hawkular.metrics.client.model.Deadband;
 import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.Histogram;
 import org.hawkular.metrics.client.model.Logger;
+import org.hawkular.metrics.client.model.NoopMetrics;
+import org.hawkular.metrics.client.model.Rollup;
+import org.hawkular.metrics.client.model.Sampling;
+import org.hawkular.metrics.client.model.Tag;
+import org.hawkular.metrics.client.model.TagAggregation;
 import org.hawkular.metrics.client.model.Tags;
+import org.hawkular.metrics.client.model.Timer;
 import org.hawkular.metrics.client.model.Watch;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -140,6 +155,282 @@ public class HawkularClientTest {
         assertThat(value).isBetween(50d, 70d);
     }
 
+    @Test
+    public void shouldFeedTimer() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        Timer timer = hwk.timer("2001.hal.boottime");
+        Timer.Context first;
+        try (Timer.Context ctx = timer.time()) {
+            first = ctx;
+            // Nested timing gets its own context
+            try (Timer.Context nested = timer.time(Tags.singleton("phase", "init"))) {
+                assertThat(nested).isNotSameAs(ctx);
+                Thread.sleep(20);
+            }
+            Thread.sleep(30);
+        }
+        // Stopping a stale context doesn't stop a newer measure
+        Timer.Context second = timer.time();
+        assertThat(second).isNotSameAs(first);
+        assertThat(first.stop()).isEqualTo(-1);
+        assertThat(second.stop()).isGreaterThanOrEqualTo(0);
+        assertThat(second.stop()).isEqualTo(-1);
+
+        assertThat(client.getMetricsRestCalls()).hasSize(3);
+        JSONObject nested = new JSONObject(client.getMetricsRestCalls().get(0))
+                .getJSONArray("gauges")
+                .getJSONObject(0)
+                .getJSONArray("dataPoints")
+                .getJSONObject(0);
+        assertThat(nested.getDouble("value")).isBetween(20d, 40d);
+        assertThat(nested.getJSONObject("tags").getString("phase")).isEqualTo("init");
+        Double value = new JSONObject(client.getMetricsRestCalls().get(1))
+                .getJSONArray("gauges")
+                .getJSONObject(0)
+                .getJSONArray("dataPoints")
+                .getJSONObject(0)
+                .getDouble("value");
+        assertThat(value).isBetween(50d, 70d);
+    }
+
+    @Test
+    public void shouldApplyGaugeDeadband() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .gaugeDeadband("2001.hal.heat", Deadband.absolute(1, 0))
+                .gaugeDeadband("/2001\\.pod\\..*/", Deadband.relative(0.1, 100))
+                .reportInterval(50, TimeUnit.MILLISECONDS)
+                .build();
+        Gauge heat = hwk.gauge("2001.hal.heat");
+        heat.set(10);
+        heat.set(10.5);
+        heat.set(9.2);
+        heat.set(11.5);
+        heat.set(11.8);
+        Gauge pressure = hwk.gauge("2001.pod.pressure");
+        pressure.set(100);
+        pressure.set(109);
+        pressure.set(91);
+        Thread.sleep(150);
+        // Heartbeat expired
+        pressure.set(91);
+        hwk.stop();
+
+        List<Double> sent = new ArrayList<>();
+        long suppressed = 0;
+        for (String call : client.getMetricsRestCalls()) {
+            JSONObject json = new JSONObject(call);
+            if (json.has("gauges")) {
+                sent.add(json.getJSONArray("gauges").getJSONObject(0).getJSONArray("dataPoints").getJSONObject(0)
+                        .getDouble("value"));
+            } else {
+                assertThat(json.getJSONArray("counters").getJSONObject(0).getString("id"))
+                        .isEqualTo("hawkular.toolbox.deadband.suppressed");
+                suppressed = json.getJSONArray("counters").getJSONObject(0).getJSONArray("dataPoints")
+                        .getJSONObject(0).getLong("value");
+            }
+        }
+        assertThat(sent).containsExactly(10d, 11.5, 100d, 91d);
+        assertThat(suppressed).isEqualTo(5L);
+    }
+
+    @Test
+    public void shouldRollupGauges() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .rollup("2001.hal.heat", Rollup.single(Rollup.Stat.MAX))
+                .rollup("/2001\\.pod\\..*/", Rollup.derived(Rollup.Stat.MIN, Rollup.Stat.AVG, Rollup.Stat.COUNT))
+                .build();
+        Gauge heat = hwk.gauge("2001.hal.heat");
+        Gauge pressure = hwk.gauge("2001.pod.pressure");
+        heat.set(10);
+        heat.set(42);
+        heat.set(12);
+        pressure.set(100);
+        pressure.set(110);
+        pressure.set(90);
+        pressure.set(104);
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+
+        heat.flush(60_000L, (suffix, tags) -> hwk.gauge(heat.getName() + suffix, tags));
+        pressure.flush(60_000L, (suffix, tags) -> hwk.gauge(pressure.getName() + suffix, tags));
+        assertThat(client.getLastGaugeValues()).containsOnly(
+                entry("2001.hal.heat", 42d),
+                entry("2001.pod.pressure.min", 90d),
+                entry("2001.pod.pressure.avg", 101d),
+                entry("2001.pod.pressure.count", 4d));
+        for (String call : client.getMetricsRestCalls()) {
+            assertThat(new JSONObject(call).getJSONArray("gauges").getJSONObject(0).getJSONArray("dataPoints")
+                    .getJSONObject(0).getLong("timestamp")).isEqualTo(60_000L);
+        }
+
+        // Nothing accumulated since last flush
+        client.clear();
+        heat.flush(70_000L, (suffix, tags) -> hwk.gauge(heat.getName() + suffix, tags));
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+    }
+
+    @Test
+    public void shouldFlushRollupsPeriodically() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(50, TimeUnit.MILLISECONDS)
+                .rollup("2001.hal.wakeup", Rollup.derived(Rollup.Stat.COUNT))
+                .build();
+        Watch watch = hwk.watch("2001.hal.wakeup");
+        watch.tick();
+        watch.tick();
+        Thread.sleep(150);
+        hwk.stop();
+        assertThat(client.getLastGaugeValues()).containsOnly(entry("2001.hal.wakeup.count", 2d));
+    }
+
+    @Test
+    public void shouldSampleEveryNth() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .samplingPolicy("/2001\\.hal\\..*/", Sampling.everyNth(10))
+                .build();
+        Gauge size = hwk.gauge("2001.hal.message.size");
+        Counter messages = hwk.counter("2001.hal.messages");
+        for (int i = 0; i < 100; i++) {
+            size.set(i);
+            messages.inc();
+        }
+        assertThat(client.getMetricsRestCalls()).hasSize(20);
+        assertThat(client.getLastGaugeValues()).containsOnly(entry("2001.hal.message.size", 90d));
+        assertThat(messages.getCount()).isEqualTo(100L);
+        // The count is exact: counters are not tagged with the sampling ratio
+        assertThat(client.getTagsRestCalls()).containsOnly(
+                new HttpClientMock.TagsData("/gauges/2001.hal.message.size/tags", "{\"sampling.ratio\":\"0.1\"}"));
+    }
+
+    @Test
+    public void shouldNotSampleHistogramOutputs() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .samplingPolicy("/2001\\.hal\\..*/", Sampling.everyNth(2))
+                .build();
+        Histogram latency = hwk.histogram("2001.hal.latency");
+        for (int i = 0; i < 10; i++) {
+            latency.record(i);
+        }
+        latency.report(1000L);
+        assertThat(client.getLastGaugeValues()).contains(entry("2001.hal.latency.count", 5d))
+                .containsKeys("2001.hal.latency.min", "2001.hal.latency.max", "2001.hal.latency.mean");
+    }
+
+    @Test
+    public void shouldSampleWithProbabilityAndRateLimit() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .samplingPolicy("2001.hal.message.size", Sampling.probability(0.1))
+                .samplingPolicy("2001.hal.latency", Sampling.rateLimit(10))
+                .build();
+        Gauge size = hwk.gauge("2001.hal.message.size");
+        for (int i = 0; i < 10_000; i++) {
+            size.set(i);
+        }
+        assertThat(client.getMetricsRestCalls().size()).isBetween(500, 1500);
+
+        client.clear();
+        Timer latency = hwk.timer("2001.hal.latency");
+        for (int i = 0; i < 1000; i++) {
+            latency.record(i, TimeUnit.MILLISECONDS);
+        }
+        // Burst of one second worth of points
+        assertThat(client.getMetricsRestCalls().size()).isBetween(10, 11);
+        assertThat(client.getTagsRestCalls()).containsOnly(
+                new HttpClientMock.TagsData("/gauges/2001.hal.latency/tags", "{\"sampling.maxRate\":\"10.0\"}"));
+    }
+
+    @Test
+    public void shouldAggregateAcrossAllTagsOnItsOwnMetric() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .tagAggregation("http.requests", TagAggregation.drop("instance", "method"))
+                .build();
+        Counter requests = hwk.counter("http.requests");
+        requests.inc(Tags.from(Tag.keyValue("instance", "pod-1"), Tag.keyValue("method", "GET")));
+        requests.inc(Tags.from(Tag.keyValue("instance", "pod-2"), Tag.keyValue("method", "POST")));
+        requests.inc();
+        requests.flush(60_000L, (suffix, tags) -> hwk.counter(requests.getName() + suffix, tags));
+        requests.inc();
+
+        // The parent sends the overall count, the group its own: they never share a series
+        Map<String, List<Long>> values = new HashMap<>();
+        for (String call : client.getMetricsRestCalls()) {
+            JSONObject counter = new JSONObject(call).getJSONArray("counters").getJSONObject(0);
+            values.computeIfAbsent(counter.getString("id"), id -> new ArrayList<>())
+                    .add(counter.getJSONArray("dataPoints").getJSONObject(0).getLong("value"));
+        }
+        assertThat(values).containsOnlyKeys("http.requests", "http.requests.all");
+        assertThat(values.get("http.requests")).containsExactly(3L, 4L);
+        assertThat(values.get("http.requests.all")).containsExactly(2L);
+    }
+
+    @Test
+    public void shouldAggregateAcrossDroppedTags() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .tagAggregation("/http\\..*/", TagAggregation.drop("instance").maxGroups(2))
+                .build();
+        Counter requests = hwk.counter("http.requests");
+        Gauge latency = hwk.gauge("http.latency");
+        for (int i = 0; i < 10; i++) {
+            Tags tags = Tags.from(Tag.keyValue("instance", "pod-" + i), Tag.keyValue("method", i < 7 ? "GET" : "POST"));
+            requests.inc(tags);
+            latency.set(i, tags);
+        }
+        // Bounded: third group goes to overflow
+        requests.inc(Tags.from(Tag.keyValue("instance", "pod-0"), Tag.keyValue("method", "PUT")));
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+
+        requests.flush(60_000L, (suffix, tags) -> hwk.counter(requests.getName() + suffix, tags));
+        latency.flush(60_000L, (suffix, tags) -> hwk.gauge(latency.getName() + suffix, tags));
+        Map<String, Double> values = new HashMap<>();
+        for (String call : client.getMetricsRestCalls()) {
+            JSONObject json = new JSONObject(call);
+            String type = json.has("counters") ? "counters" : "gauges";
+            JSONObject metric = json.getJSONArray(type).getJSONObject(0);
+            JSONObject dp = metric.getJSONArray("dataPoints").getJSONObject(0);
+            assertThat(dp.getLong("timestamp")).isEqualTo(60_000L);
+            assertThat(dp.has("tags")).isFalse();
+            values.put(metric.getString("id"), dp.getDouble("value"));
+        }
+        // Each group on its own metric, as Hawkular keeps one point per metric and timestamp
+        assertThat(values).containsOnly(
+                entry("http.requests.GET", 7d),
+                entry("http.requests.POST", 3d),
+                entry("http.requests.__overflow__", 1d),
+                entry("http.latency.GET", 6d),
+                entry("http.latency.POST", 9d));
+        assertThat(client.getTagsRestCalls()).contains(
+                new HttpClientMock.TagsData("/counters/http.requests.GET/tags", "{\"method\":\"GET\"}"),
+                new HttpClientMock.TagsData("/counters/http.requests.__overflow__/tags", "{\"__overflow__\":\"true\"}"),
+                new HttpClientMock.TagsData("/gauges/http.latency.POST/tags", "{\"method\":\"POST\"}"));
+        assertThat(requests.getCount()).isEqualTo(11L);
+
+        // Unchanged counters and unfed gauges are not sent again
+        client.clear();
+        requests.inc(Tags.from(Tag.keyValue("instance", "pod-3"), Tag.keyValue("method", "POST")));
+        requests.flush(70_000L, (suffix, tags) -> hwk.counter(requests.getName() + suffix, tags));
+        latency.flush(70_000L, (suffix, tags) -> hwk.gauge(latency.getName() + suffix, tags));
+        assertThat(client.getMetricsRestCalls()).hasSize(1);
+        assertSingleValue(new JSONObject(client.getMetricsRestCalls().get(0)),
+                "counters",
+                "http.requests.POST",
+                4L,
+                json -> json.getLong("value"),
+                Collections.emptyMap());
+    }
+
     @Test
     public void shouldCreateAvailability() {
         HawkularClient hwk = HawkularFactory.load().builder()
@@ -183,6 +474,363 @@ public class HawkularClientTest {
         assertThat(client.getTagsRestCalls()).hasSize(0);
     }
 
+    @Test
+    public void shouldSendAvailabilityTransitionsOnly() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .availabilityPolicy("2001.hal.sane", AvailabilityPolicy.transitionsOnly()
+                        .keepAlive(1, TimeUnit.MINUTES)
+                        .watchdog(10, TimeUnit.SECONDS, Availability.UNKNOWN))
+                .build();
+        AvailabilityMetric sane = hwk.availability("2001.hal.sane");
+        for (int i = 0; i < 100; i++) {
+            sane.up();
+        }
+        sane.down();
+        sane.down();
+        sane.up();
+        assertThat(availValues()).containsExactly("UP", "DOWN", "UP");
+
+        long now = System.currentTimeMillis();
+        // Nothing to do yet
+        sane.check(now + 5_000);
+        assertThat(availValues()).hasSize(3);
+        // Watchdog
+        sane.check(now + 15_000);
+        assertThat(availValues()).containsExactly("UP", "DOWN", "UP", "UNKNOWN");
+        assertThat(sane.getState()).hasValue(Availability.UNKNOWN);
+        // Keep-alive
+        sane.check(now + 30_000);
+        assertThat(availValues()).hasSize(4);
+        sane.check(now + 80_000);
+        assertThat(availValues()).containsExactly("UP", "DOWN", "UP", "UNKNOWN", "UNKNOWN");
+        sane.up();
+        assertThat(availValues()).containsExactly("UP", "DOWN", "UP", "UNKNOWN", "UNKNOWN", "UP");
+        hwk.stop();
+    }
+
+    @Test
+    public void shouldArmWatchdogFromCreation() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .availabilityPolicy("2001.hal.sane", AvailabilityPolicy.transitionsOnly()
+                        .keepAlive(1, TimeUnit.MINUTES)
+                        .watchdog(10, TimeUnit.SECONDS, Availability.DOWN))
+                .build();
+        AvailabilityMetric sane = hwk.availability("2001.hal.sane");
+        long now = System.currentTimeMillis();
+        sane.check(now + 5_000);
+        assertThat(availValues()).isEmpty();
+        assertThat(sane.getState()).isEmpty();
+        // Never fed
+        sane.check(now + 15_000);
+        assertThat(availValues()).containsExactly("DOWN");
+        assertThat(sane.getState()).hasValue(Availability.DOWN);
+        hwk.stop();
+    }
+
+    private List<String> availValues() {
+        List<String> values = new ArrayList<>();
+        for (String call : client.getMetricsRestCalls()) {
+            values.add(new JSONObject(call).getJSONArray("availability").getJSONObject(0)
+                    .getJSONArray("dataPoints").getJSONObject(0).getString("value"));
+        }
+        return values;
+    }
+
+    @Test
+    public void shouldNotSendAnythingWhenDisabled() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .disable()
+                .build();
+        Gauge gauge = hwk.gauge("2001.hal.heat", Tags.singleton("t1", "v1"));
+        Counter counter = hwk.counter("2001.hal.quotes");
+        Watch watch = hwk.watch("2001.hal.boottime");
+        AvailabilityMetric avail = hwk.availability("2001.hal.health");
+        Logger logger = hwk.logger("2001.hal.log");
+        // Shared no-op instances
+        assertThat(NoopMetrics.isNoop(gauge)).isTrue();
+        assertThat(hwk.gauge("2001.hal.heat")).isSameAs(gauge);
+        assertThat(hwk.gauge("2001.pod.pressure")).isSameAs(gauge);
+        assertThat(hwk.histogram("2001.hal.latency")).isSameAs(hwk.histogram("2001.pod.latency"));
+
+        gauge.set(5.5);
+        counter.inc(Tags.singleton("t1", "v1"));
+        watch.tick();
+        avail.up();
+        logger.log("I'm sorry, Dave. I'm afraid I can't do that.");
+        // Timing allocates no context and records nothing
+        Timer timer = hwk.timer("2001.hal.boottime");
+        Timer.Context ctx = timer.time();
+        assertThat(timer.time(Tags.singleton("phase", "init"))).isSameAs(ctx);
+        assertThat(ctx.stop()).isEqualTo(-1);
+
+        assertThat(counter.getCount()).isZero();
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+        assertThat(client.getTagsRestCalls()).isEmpty();
+    }
+
+    @Test
+    public void shouldFilterMetrics() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .prefixedWith("imdb.")
+                .allowMetrics("2001.*")
+                .allowMetrics("/^imdb\\.alien\\./")
+                .denyMetrics("2001.hal.heat")
+                .denyMetrics("/debug/")
+                .build();
+        hwk.gauge("2001.hal.heat", Tags.singleton("t1", "v1")).set(5.5);
+        hwk.counter("2001.hal.debug.count").inc();
+        hwk.counter("2010.hal.quotes").inc();
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+        assertThat(client.getTagsRestCalls()).isEmpty();
+
+        hwk.counter("2001.hal.quotes").inc();
+        hwk.gauge("alien.mother.heat").set(1.0);
+        assertThat(client.getMetricsRestCalls()).hasSize(2);
+    }
+
+    @Test
+    public void shouldAcceptOutputsOfAllowedMetric() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .allowMetrics("2001.hal.latency")
+                .build();
+        Histogram latency = hwk.histogram("2001.hal.latency");
+        Histogram other = hwk.histogram("2001.pod.latency");
+        assertThat(NoopMetrics.isNoop(latency)).isFalse();
+        assertThat(NoopMetrics.isNoop(other)).isTrue();
+
+        latency.record(42);
+        latency.report(1000L);
+        assertThat(client.getLastGaugeValues()).containsKeys("2001.hal.latency.count", "2001.hal.latency.max");
+        assertThat(client.getLastGaugeValues().keySet()).allMatch(name -> name.startsWith("2001.hal.latency."));
+    }
+
+    @Test
+    public void shouldRedirectToOverflowMetric() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .maxMetrics(2)
+                .reportInterval(50, TimeUnit.MILLISECONDS)
+                .build();
+        Counter quotes = hwk.counter("2001.hal.quotes");
+        Gauge heat = hwk.gauge("2001.hal.heat");
+        Counter overflow = hwk.counter("2001.hal.errors");
+        assertThat(quotes.getName()).isEqualTo("2001.hal.quotes");
+        assertThat(heat.getName()).isEqualTo("2001.hal.heat");
+        assertThat(overflow.getName()).isEqualTo("__overflow__");
+        assertThat(hwk.counter("2001.hal.quotes")).isSameAs(quotes);
+        assertThat(hwk.counter("2001.hal.warnings")).isSameAs(overflow);
+        // Looking up an overflowing name again doesn't count it twice
+        assertThat(hwk.counter("2001.hal.errors")).isSameAs(overflow);
+        assertThat(hwk.counter("2001.hal.warnings")).isSameAs(overflow);
+
+        Thread.sleep(200);
+        hwk.stop();
+        assertThat(client.getMetricsRestCalls()).hasSize(1);
+        assertSingleValue(new JSONObject(client.getMetricsRestCalls().get(0)),
+                "counters",
+                "hawkular.toolbox.overflow.metrics",
+                2,
+                json -> json.getInt("value"),
+                Collections.emptyMap());
+    }
+
+    @Test
+    public void shouldShareReporterThread() {
+        long before = countReporterThreads();
+        List<HawkularClient> clients = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            HawkularClient hwk = HawkularFactory.load().builder()
+                    .useHttpClient(uri -> client)
+                    .reportInterval(1234, TimeUnit.MILLISECONDS)
+                    .build();
+            hwk.histogram("2001.hal.latency").record(i);
+            clients.add(hwk);
+        }
+        assertThat(countReporterThreads() - before).isLessThanOrEqualTo(1);
+        clients.forEach(HawkularClient::stop);
+    }
+
+    private static long countReporterThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.isAlive() && t.getName().equals("hawkular-interval-reporter"))
+                .count();
+    }
+
+    @Test
+    public void shouldDropOverflowingMetrics() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .maxMetrics(1)
+                .dropOverflow()
+                .build();
+        hwk.counter("2001.hal.quotes").inc();
+        Counter errors = hwk.counter("2001.hal.errors");
+        errors.inc();
+        assertThat(NoopMetrics.isNoop(errors)).isTrue();
+        assertThat(hwk.counter("2001.hal.errors")).isSameAs(errors);
+        hwk.stop();
+        assertThat(client.getMetricsRestCalls()).hasSize(1);
+        assertThat(client.getMetricsRestCalls().get(0)).contains("2001.hal.quotes");
+    }
+
+    @Test
+    public void shouldLimitReportableMetrics() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .maxMetrics(1)
+                .build();
+        Histogram latency = hwk.histogram("2001.hal.latency");
+        Histogram overflow = hwk.histogram("2001.hal.size");
+        assertThat(latency.getName()).isEqualTo("2001.hal.latency");
+        assertThat(overflow.getName()).isEqualTo("__overflow__");
+        assertThat(hwk.histogram("2001.hal.duration")).isSameAs(overflow);
+        assertThat(hwk.histogram("2001.hal.size")).isSameAs(overflow);
+        assertThat(hwk.topK("2001.hal.users").getName()).isEqualTo("__overflow__");
+        assertThat(hwk.meter("2001.hal.requests").getName()).isEqualTo("__overflow__");
+        hwk.stop();
+    }
+
+    @Test
+    public void shouldDropOverflowingReportableMetrics() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .maxMetrics(1)
+                .dropOverflow()
+                .build();
+        hwk.counter("2001.hal.quotes");
+        Histogram latency = hwk.histogram("2001.hal.latency");
+        assertThat(NoopMetrics.isNoop(latency)).isTrue();
+        assertThat(hwk.histogram("2001.hal.latency")).isSameAs(latency);
+        assertThat(NoopMetrics.isNoop(hwk.distinctCounter("2001.hal.users"))).isTrue();
+        hwk.stop();
+    }
+
+    @Test
+    public void shouldLimitDPTagsSets() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .maxTagSetsPerMetric(1)
+                .build();
+        Counter counter = hwk.counter("2001.hal.quotes");
+        counter.inc(Tags.singleton("t1", "v1"));
+        counter.inc(Tags.singleton("t1", "v2"));
+        counter.inc(Tags.singleton("t1", "v1"));
+        hwk.stop();
+
+        assertThat(client.getMetricsRestCalls()).hasSize(3);
+        assertSingleValue(new JSONObject(client.getMetricsRestCalls().get(1)),
+                "counters",
+                "2001.hal.quotes",
+                2,
+                json -> json.getInt("value"),
+                Collections.singletonMap("__overflow__", "true"));
+        assertSingleValue(new JSONObject(client.getMetricsRestCalls().get(2)),
+                "counters",
+                "2001.hal.quotes",
+                3,
+                json -> json.getInt("value"),
+                Collections.singletonMap("t1", "v1"));
+    }
+
+    @Test
+    public void shouldEvictIdleMetrics() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .maxMetrics(2)
+                .evictIdleMetrics(100, TimeUnit.MILLISECONDS)
+                .reportInterval(20, TimeUnit.MILLISECONDS)
+                .build();
+        Counter quotes = hwk.counter("2001.hal.quotes");
+        Gauge heat = hwk.gauge("2001.hal.heat");
+        for (int i = 0; i < 10; i++) {
+            heat.set(1.0);
+            Thread.sleep(30);
+        }
+        assertThat(quotes.isDetached()).isTrue();
+        assertThat(heat.isDetached()).isFalse();
+        assertThat(hwk.gauge("2001.hal.heat")).isSameAs(heat);
+
+        // Evicted slot is available again
+        Counter errors = hwk.counter("2001.hal.errors");
+        assertThat(errors.getName()).isEqualTo("2001.hal.errors");
+        // Stale handle remains usable
+        quotes.inc();
+        hwk.stop();
+        assertThat(client.getMetricsRestCalls()).last().asString().contains("2001.hal.quotes");
+    }
+
+    @Test
+    public void shouldNotEvictMetricsUpdatedWithoutSending() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .gaugeDeadband("2001.hal.heat", Deadband.absolute(1, 0))
+                .samplingPolicy("2001.hal.quotes", Sampling.everyNth(1000))
+                .availabilityPolicy("2001.hal.health", AvailabilityPolicy.transitionsOnly())
+                .evictIdleMetrics(100, TimeUnit.MILLISECONDS)
+                .reportInterval(20, TimeUnit.MILLISECONDS)
+                .build();
+        Gauge heat = hwk.gauge("2001.hal.heat");
+        Counter quotes = hwk.counter("2001.hal.quotes");
+        AvailabilityMetric health = hwk.availability("2001.hal.health");
+        for (int i = 0; i < 10; i++) {
+            // Suppressed by the deadband, sampled out, not a transition
+            heat.set(1.0);
+            quotes.inc();
+            health.up();
+            Thread.sleep(30);
+        }
+        hwk.stop();
+        assertThat(heat.isDetached()).isFalse();
+        assertThat(quotes.isDetached()).isFalse();
+        assertThat(health.isDetached()).isFalse();
+    }
+
+    @Test
+    public void shouldRestartCountOfEvictedCounter() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .evictIdleMetrics(50, TimeUnit.MILLISECONDS)
+                .reportInterval(20, TimeUnit.MILLISECONDS)
+                .build();
+        Counter quotes = hwk.counter("2001.hal.quotes");
+        quotes.inc(5);
+        Thread.sleep(200);
+        assertThat(quotes.isDetached()).isTrue();
+
+        Counter again = hwk.counter("2001.hal.quotes");
+        assertThat(again).isNotSameAs(quotes);
+        again.inc();
+        quotes.inc();
+        hwk.stop();
+        assertThat(again.getCount()).isEqualTo(1L);
+        assertThat(quotes.getCount()).isEqualTo(6L);
+    }
+
+    @Test
+    public void shouldRemoveMetric() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .maxMetrics(1)
+                .build();
+        Counter quotes = hwk.counter("2001.hal.quotes");
+        assertThat(hwk.remove(quotes)).isTrue();
+        assertThat(hwk.remove(quotes)).isFalse();
+        assertThat(quotes.isDetached()).isTrue();
+
+        Counter other = hwk.counter("2001.hal.quotes");
+        assertThat(other).isNotSameAs(quotes);
+        assertThat(other.getName()).isEqualTo("2001.hal.quotes");
+        hwk.stop();
+    }
+
     private static <T> void assertSingleValue(JSONObject metrics,
                                               String metricType,
                                               String id,
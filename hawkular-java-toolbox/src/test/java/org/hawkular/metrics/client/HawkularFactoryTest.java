@@ -18,16 +18,33 @@ package org.hawkular.metrics.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import org.hawkular.metrics.client.config.HawkularClientInfo;
+import org.hawkular.metrics.client.model.Availability;
+import org.hawkular.metrics.client.model.AvailabilityPolicy;
+import org.hawkular.metrics.client.model.Deadband;
+import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.model.NoopMetrics;
+import org.hawkular.metrics.client.model.Rollup;
+import org.hawkular.metrics.client.model.Sampling;
 import org.hawkular.metrics.client.model.Tag;
+import org.hawkular.metrics.client.model.TagAggregation;
 import org.hawkular.metrics.client.model.Tags;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * @author Joel Takvorian
@@ -37,6 +54,9 @@ public class HawkularFactoryTest {
     private static final String KEY = "hawkular.java.toolbox.config";
     private static String HOST = "";
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @BeforeClass
     public static void setupClass() throws UnknownHostException {
         InetAddress address = InetAddress.getLocalHost();
@@ -44,6 +64,7 @@ public class HawkularFactoryTest {
     }
 
     @Before
+    @After
     public void resetProps() {
         System.clearProperty(KEY);
     }
@@ -54,6 +75,15 @@ public class HawkularFactoryTest {
         assertThat(info.getTenant()).isEqualTo("unconfigured");
     }
 
+    @Test
+    public void shouldOnlyDisableWhenAsked() {
+        // A missing config file doesn't disable the client: only "disabled: true" or the system property do
+        HawkularClient hwk = HawkularFactory.loadFrom("src/test/resources/missing.yaml").create();
+        assertThat(hwk.getInfo().isDisabled()).isFalse();
+        assertThat(NoopMetrics.isNoop(hwk.gauge("2001.hal.heat"))).isFalse();
+        hwk.stop();
+    }
+
     @Test
     public void shouldCreateFromSystemProperty() {
         System.setProperty(KEY, "src/test/resources/hawkular1.yaml");
@@ -78,4 +108,143 @@ public class HawkularFactoryTest {
         assertThat(info.getRegexTags()).extracting(r -> r.getRegex().toString()).containsExactly(Pattern.compile("ehcache\\..*").toString());
         assertThat(info.getRegexTags().iterator().next().getTags().asList()).containsOnly(Tag.keyValue("impl", "ehcache"));
     }
+
+    @Test
+    public void shouldFilterMetricsFromYaml() {
+        HawkularClientInfo info = HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml").create().getInfo();
+        assertThat(info.getMetricFilter().accept("guava.cache.debug.read", HOST + ".guava.cache.debug.read")).isFalse();
+        assertThat(info.getMetricFilter().accept("guava.cache.read", HOST + ".guava.cache.read")).isTrue();
+    }
+
+    @Test
+    public void shouldReadGaugeDeadbandsFromYaml() {
+        HawkularClientInfo info = HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml").create().getInfo();
+        Deadband poolSize = info.getGaugeDeadbands().find("pool.size", HOST + ".pool.size").get();
+        assertThat(poolSize.getAbsolute()).isEqualTo(1d);
+        assertThat(poolSize.getHeartbeat()).isEqualTo(0L);
+        Deadband config = info.getGaugeDeadbands().find("config.timeout", HOST + ".config.timeout").get();
+        assertThat(config.getAbsolute()).isEqualTo(0d);
+        assertThat(config.getHeartbeat()).isEqualTo(60000L);
+        assertThat(info.getGaugeDeadbands().find("guava.cache.read", HOST + ".guava.cache.read")).isEmpty();
+    }
+
+    @Test
+    public void shouldReadAvailabilityPoliciesFromYaml() {
+        HawkularClientInfo info = HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml").create().getInfo();
+        AvailabilityPolicy policy = info.getAvailabilityPolicies().find("db.health", HOST + ".db.health").get();
+        assertThat(policy.getKeepAlive()).isEqualTo(60000L);
+        assertThat(policy.getWatchdogTimeout()).isEqualTo(30000L);
+        assertThat(policy.getWatchdogState()).hasValue(Availability.UNKNOWN);
+        assertThat(info.getAvailabilityPolicies().find("db.status", HOST + ".db.status")).isEmpty();
+    }
+
+    @Test
+    public void shouldReadRollupsFromYaml() {
+        HawkularClientInfo info = HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml").create().getInfo();
+        Rollup depth = info.getRollups().find("queue.depth", HOST + ".queue.depth").get();
+        assertThat(depth.isDerived()).isFalse();
+        assertThat(depth.getStats()).containsExactly(Rollup.Stat.MAX);
+        Rollup latency = info.getRollups().find("latency.db", HOST + ".latency.db").get();
+        assertThat(latency.isDerived()).isTrue();
+        assertThat(latency.getStats()).containsExactly(Rollup.Stat.MAX, Rollup.Stat.AVG);
+        assertThat(info.getRollups().find("guava.cache.read", HOST + ".guava.cache.read")).isEmpty();
+    }
+
+    @Test
+    public void shouldReadSamplingPoliciesFromYaml() {
+        HawkularClientInfo info = HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml").create().getInfo();
+        Sampling size = info.getSamplingPolicies().find("stream.message.size", HOST + ".stream.message.size").get();
+        assertThat(size.getTags().asList()).containsOnly(Tag.keyValue(Sampling.TAG_RATIO, "0.01"));
+        Sampling other = info.getSamplingPolicies().find("stream.lag", HOST + ".stream.lag").get();
+        assertThat(other.getTags().asList()).containsOnly(Tag.keyValue(Sampling.TAG_MAX_RATE, "100.0"));
+        assertThat(info.getSamplingPolicies().find("guava.cache.read", HOST + ".guava.cache.read")).isEmpty();
+    }
+
+    @Test
+    public void shouldReadTagAggregationsFromYaml() {
+        HawkularClientInfo info = HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml").create().getInfo();
+        TagAggregation aggregation = info.getTagAggregations().find("http.requests", HOST + ".http.requests").get();
+        assertThat(aggregation.getDroppedTags()).containsOnly("instance", "pod");
+        assertThat(aggregation.getGaugeStat()).isEqualTo(Rollup.Stat.AVG);
+        assertThat(aggregation.getMaxGroups()).isEqualTo(50);
+        assertThat(info.getTagAggregations().find("guava.cache.read", HOST + ".guava.cache.read")).isEmpty();
+    }
+
+    @Test
+    public void shouldReadDerivedMetricsFromYaml() {
+        HawkularClientInfo info = HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml").create().getInfo();
+        assertThat(info.getDerivedMetrics()).containsOnlyKeys("cache.hitRatio");
+        assertThat(info.getDerivedMetrics().get("cache.hitRatio").getVariables())
+                .containsExactly("cache.hit", "cache.miss");
+    }
+
+    @Test
+    public void shouldCacheFactoryPerConfigFile() {
+        HawkularFactory factory = HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml");
+        assertThat(HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml")).isSameAs(factory);
+        assertThat(HawkularFactory.loadFrom("src/test/resources/hawkular1.yaml")).isNotSameAs(factory);
+        System.setProperty(KEY, "src/test/resources/hawkular2.yaml");
+        assertThat(HawkularFactory.load()).isSameAs(factory);
+
+        HawkularFactory.clearCache();
+        assertThat(HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml")).isNotSameAs(factory);
+    }
+
+    @Test
+    public void shouldCreateManyLoggersWithoutReloading() throws IOException {
+        File file = temporaryFolder.newFile("hawkular.yaml");
+        Files.write(file.toPath(), "tenant: first\ndisabled: true".getBytes(StandardCharsets.UTF_8));
+        System.setProperty(KEY, file.getPath());
+        HawkularFactory factory = HawkularFactory.load();
+        HawkularLogger first = factory.logger("first");
+
+        // Changes on disk are not seen by the cached factory, nor by its lazy loggers
+        Files.write(file.toPath(), "tenant: second\ndisabled: true".getBytes(StandardCharsets.UTF_8));
+        List<HawkularLogger> loggers = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            loggers.add(HawkularFactory.load().logger("logger" + i));
+        }
+        assertThat(HawkularFactory.load()).isSameAs(factory);
+        assertThat(loggers).filteredOn(HawkularLogger::hasClient).isEmpty();
+        assertThat(first.hasClient()).isFalse();
+
+        // Client created on first use only (disabled: nothing is actually sent)
+        first.info("hello");
+        assertThat(first.hasClient()).isTrue();
+        assertThat(loggers).filteredOn(HawkularLogger::hasClient).isEmpty();
+        assertThat(first.getMetricsBase()).isEqualTo("first.");
+        assertThat(factory.create().getInfo().getTenant()).isEqualTo("first");
+
+        HawkularFactory.clearCache();
+        assertThat(HawkularFactory.load().create().getInfo().getTenant()).isEqualTo("second");
+    }
+
+    @Test
+    public void shouldNotCacheMissingConfigFile() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "later.yaml");
+        HawkularFactory missing = HawkularFactory.loadFrom(file.getPath());
+        assertThat(missing.create().getInfo().getTenant()).isEqualTo("unconfigured");
+
+        Files.write(file.toPath(), "tenant: later".getBytes(StandardCharsets.UTF_8));
+        HawkularFactory found = HawkularFactory.loadFrom(file.getPath());
+        assertThat(found).isNotSameAs(missing);
+        assertThat(found.create().getInfo().getTenant()).isEqualTo("later");
+        assertThat(HawkularFactory.loadFrom(file.getPath())).isSameAs(found);
+    }
+
+    @Test
+    public void shouldNotShareConfigBetweenClients() {
+        HawkularFactory factory = HawkularFactory.loadFrom("src/test/resources/hawkular2.yaml");
+        HawkularClientBuilder builder = factory.builder();
+        builder.addGlobalTag("mutated", "yes");
+        assertThat(factory.create().getInfo().getGlobalTags().asList()).doesNotContain(Tag.keyValue("mutated", "yes"));
+        assertThat(factory.logger("other").getMetricsBase()).isEqualTo("other.");
+    }
+
+    @Test
+    public void shouldCreateDisabledFromYaml() {
+        HawkularClient hwk = HawkularFactory.loadFrom("src/test/resources/hawkular3.yaml").create();
+        assertThat(hwk.getInfo().isDisabled()).isTrue();
+        assertThat(hwk.gauge("2001.hal.heat").getClass()).isNotEqualTo(Gauge.class);
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.client.model.Histogram;
+import org.hawkular.metrics.client.model.Tags;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class HistogramTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+
+    @Test
+    public void shouldPublishStatsAndPercentiles() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .build();
+        Histogram histogram = hwk.histogram("2001.hal.latency", Tags.singleton("movie", "2001"));
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        histogram.report(1000L);
+
+        Map<String, Double> values = client.getLastGaugeValues();
+        assertThat(values).containsOnlyKeys("2001.hal.latency.count", "2001.hal.latency.min", "2001.hal.latency.max",
+                "2001.hal.latency.mean", "2001.hal.latency.p50", "2001.hal.latency.p95", "2001.hal.latency.p99",
+                "2001.hal.latency.p999");
+        assertThat(values.get("2001.hal.latency.count")).isEqualTo(10000d);
+        assertThat(values.get("2001.hal.latency.min")).isEqualTo(1d);
+        assertThat(values.get("2001.hal.latency.max")).isEqualTo(10000d);
+        assertThat(values.get("2001.hal.latency.mean")).isEqualTo(5000.5);
+        assertThat(values.get("2001.hal.latency.p50")).isCloseTo(5000d, offset(5000 * 0.03));
+        assertThat(values.get("2001.hal.latency.p95")).isCloseTo(9500d, offset(9500 * 0.03));
+        assertThat(values.get("2001.hal.latency.p99")).isCloseTo(9900d, offset(9900 * 0.03));
+        assertThat(values.get("2001.hal.latency.p999")).isCloseTo(9990d, offset(9990 * 0.03));
+
+        HttpClientMock.TagsData p999Tags = client.getTagsRestCalls().stream()
+                .filter(tags -> tags.resource.equals("/gauges/2001.hal.latency.p999/tags"))
+                .findFirst()
+                .get();
+        assertThat(p999Tags.body).contains("\"quantile\":\"0.999\"").contains("\"movie\":\"2001\"");
+
+        // Next interval starts from scratch, and nothing is published when nothing was recorded
+        client.clear();
+        histogram.report(2000L);
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+        histogram.record(42);
+        histogram.report(3000L);
+        values = client.getLastGaugeValues();
+        assertThat(values.get("2001.hal.latency.count")).isEqualTo(1d);
+        assertThat(values.get("2001.hal.latency.p50")).isEqualTo(42d);
+    }
+
+    @Test
+    public void shouldRecordConcurrently() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .histogramPercentiles(0.5)
+                .build();
+        Histogram histogram = hwk.histogram("2001.hal.latency");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 1000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        histogram.report(1000L);
+
+        Map<String, Double> values = client.getLastGaugeValues();
+        assertThat(values).containsOnlyKeys("2001.hal.latency.count", "2001.hal.latency.min", "2001.hal.latency.max",
+                "2001.hal.latency.mean", "2001.hal.latency.p50");
+        assertThat(values.get("2001.hal.latency.count")).isEqualTo(400_000d);
+        assertThat(values.get("2001.hal.latency.min")).isEqualTo(0d);
+        assertThat(values.get("2001.hal.latency.max")).isEqualTo(999d);
+        assertThat(values.get("2001.hal.latency.mean")).isEqualTo(499.5);
+    }
+
+    @Test
+    public void shouldReportPeriodically() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(50, TimeUnit.MILLISECONDS)
+                .build();
+        hwk.histogram("2001.hal.latency").record(12);
+        Thread.sleep(150);
+        hwk.stop();
+        assertThat(client.getLastGaugeValues()).containsEntry("2001.hal.latency.p99", 12d);
+    }
+}
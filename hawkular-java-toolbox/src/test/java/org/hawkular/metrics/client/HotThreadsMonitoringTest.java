@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hawkular.metrics.client.monitor.HotThreadsMonitoring;
+import org.hawkular.metrics.client.monitor.MonitoringSession;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class HotThreadsMonitoringTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+
+    @Test
+    public void shouldReportHotThreads() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread spinner = spin("hal-spinner-1", running);
+        MonitoringSession session = hwk.prepareMonitoringSession(100, TimeUnit.MILLISECONDS)
+                .feeds(HotThreadsMonitoring.builder().top(3).build())
+                .start();
+
+        Thread.sleep(500);
+        session.stop();
+        running.set(false);
+        spinner.join();
+
+        assertThat(hotTags("thread")).contains("hal-spinner-1");
+        assertThat(client.getLastGaugeValues().get("monitor.threads.hot.1")).isBetween(0d, 100d);
+        // Each rank on its own metric, thread names are only datapoint tags: past points keep their thread
+        assertThat(client.getLastGaugeValues().keySet())
+                .allMatch(name -> name.matches("monitor\\.threads\\.hot\\.[1-3]"));
+        assertThat(client.getTagsRestCalls()).isEmpty();
+    }
+
+    @Test
+    public void shouldReportHotPools() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread spinner1 = spin("hal-spinner-1", running);
+        Thread spinner2 = spin("hal-spinner-2", running);
+        MonitoringSession session = hwk.prepareMonitoringSession(100, TimeUnit.MILLISECONDS)
+                .feeds(HotThreadsMonitoring.builder().groupByPool().build())
+                .start();
+
+        Thread.sleep(500);
+        session.stop();
+        running.set(false);
+        spinner1.join();
+        spinner2.join();
+
+        assertThat(hotTags("pool")).contains("hal-spinner-*");
+        assertThat(hotTags("thread")).isEmpty();
+    }
+
+    @Test
+    public void shouldMeasureStartedThreadsFromNextRefresh() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        MonitoringSession.Feeder feeder = HotThreadsMonitoring.builder().refreshEvery(2).build().feeds(hwk)
+                .iterator().next();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        feeder.feed();
+        Thread spinner = spin("hal-spinner-1", running);
+        Thread.sleep(50);
+        // Refreshed: the spinner is known, but its CPU time at the previous feed isn't
+        feeder.feed();
+        assertThat(hotTags("thread")).doesNotContain("hal-spinner-1");
+        Thread.sleep(50);
+        feeder.feed();
+        running.set(false);
+        spinner.join();
+
+        assertThat(hotTags("thread")).contains("hal-spinner-1");
+    }
+
+    private static Thread spin(String name, AtomicBoolean running) {
+        Thread thread = new Thread(() -> {
+            long n = 0;
+            while (running.get()) {
+                n++;
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    private Set<String> hotTags(String key) {
+        Set<String> values = new HashSet<>();
+        for (String call : client.getMetricsRestCalls()) {
+            JSONArray gauges = new JSONObject(call).getJSONArray("gauges");
+            for (int i = 0; i < gauges.length(); i++) {
+                JSONArray dataPoints = gauges.getJSONObject(i).getJSONArray("dataPoints");
+                for (int j = 0; j < dataPoints.length(); j++) {
+                    JSONObject tags = dataPoints.getJSONObject(j).optJSONObject("tags");
+                    if (tags != null && tags.has(key)) {
+                        values.add(tags.getString(key));
+                    }
+                }
+            }
+        }
+        return values;
+    }
+}
@@ -17,19 +17,23 @@
 package org.hawkular.metrics.client;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import org.hawkular.metrics.client.common.http.HawkularHttpClient;
 import org.hawkular.metrics.client.common.http.HawkularHttpResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 /**
  * @author Joel Takvorian
  */
 class HttpClientMock implements HawkularHttpClient {
-    private List<String> metricsRestCalls = new ArrayList<>();
-    private List<TagsData> tagsRestCalls = new ArrayList<>();
+    private List<String> metricsRestCalls = Collections.synchronizedList(new ArrayList<>());
+    private List<TagsData> tagsRestCalls = Collections.synchronizedList(new ArrayList<>());
 
     @Override public void addHeaders(Map<String, String> headers) {
     }
@@ -59,6 +63,28 @@ class HttpClientMock implements HawkularHttpClient {
         return tagsRestCalls;
     }
 
+    /**
+     * Last value of each gauge that has been posted, by gauge id
+     */
+    Map<String, Double> getLastGaugeValues() {
+        Map<String, Double> values = new HashMap<>();
+        synchronized (metricsRestCalls) {
+            for (String call : metricsRestCalls) {
+                JSONObject json = new JSONObject(call);
+                if (!json.has("gauges")) {
+                    continue;
+                }
+                JSONArray gauges = json.getJSONArray("gauges");
+                for (int i = 0; i < gauges.length(); i++) {
+                    JSONObject gauge = gauges.getJSONObject(i);
+                    values.put(gauge.getString("id"), gauge.getJSONArray("dataPoints").getJSONObject(0)
+                            .getDouble("value"));
+                }
+            }
+        }
+        return values;
+    }
+
     public void clear() {
         metricsRestCalls.clear();
         tagsRestCalls.clear();
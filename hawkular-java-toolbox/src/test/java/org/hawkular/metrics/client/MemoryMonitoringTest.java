@@ -18,6 +18,14 @@ package org.hawkular.metrics.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 import org.hawkular.metrics.client.monitor.MemoryMonitoring;
@@ -43,9 +51,18 @@ public class MemoryMonitoringTest {
         Thread.sleep(500);
         session.stop();
 
-        int nbMetrics = 3;
+        int nbMetrics = client.getLastGaugeValues().size();
         assertThat(client.getMetricsRestCalls().size()).isBetween(2*nbMetrics, 10*nbMetrics);
-        assertThat(client.getTagsRestCalls()).isEmpty();
+        assertThat(client.getLastGaugeValues()).containsKeys(
+                "monitor.memory.process.heap",
+                "monitor.memory.process.heap.committed",
+                "monitor.memory.process.nonheap",
+                "monitor.memory.process.nonheap.committed");
+        assertThat(client.getLastGaugeValues().keySet().stream()
+                .anyMatch(name -> name.startsWith("monitor.memory.pool.") && name.endsWith(".used"))).isTrue();
+        // Only pools are tagged
+        assertThat(client.getTagsRestCalls()).allMatch(tags -> tags.resource.startsWith("/gauges/monitor.memory.pool.")
+                || tags.resource.startsWith("/gauges/monitor.memory.buffer."));
     }
 
     @Test
@@ -61,7 +78,31 @@ public class MemoryMonitoringTest {
 
         session.stop();
 
-        assertThat(client.getTagsRestCalls()).containsExactly(
+        List<String> expected = new ArrayList<>(Arrays.asList(
+                "/gauges/monitor.memory.system.free/tags",
+                "/gauges/monitor.memory.system.swap.free/tags",
+                "/gauges/monitor.memory.process.heap/tags",
+                "/gauges/monitor.memory.process.heap.committed/tags",
+                "/gauges/monitor.memory.process.heap.max/tags",
+                "/gauges/monitor.memory.process.nonheap/tags",
+                "/gauges/monitor.memory.process.nonheap.committed/tags",
+                "/gauges/monitor.memory.process.nonheap.max/tags"));
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String base = "/gauges/monitor.memory.pool." + segment(pool.getName());
+            expected.addAll(Arrays.asList(base + ".used/tags", base + ".committed/tags", base + ".max/tags"));
+            if (pool.isCollectionUsageThresholdSupported()) {
+                expected.add(base + ".collection.used/tags");
+            }
+        }
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            String base = "/gauges/monitor.memory.buffer." + segment(pool.getName());
+            expected.addAll(Arrays.asList(base + ".used/tags", base + ".capacity/tags", base + ".count/tags"));
+        }
+        assertThat(client.getTagsRestCalls()).extracting(tags -> tags.resource)
+                .containsOnlyElementsOf(expected)
+                .hasSameSizeAs(expected);
+        assertThat(client.getTagsRestCalls()).allMatch(tags -> tags.body.contains("\"tag\":\"value\""));
+        assertThat(client.getTagsRestCalls()).contains(
                 new HttpClientMock.TagsData(
                         "/gauges/monitor.memory.system.free/tags",
                         "{\"tag\":\"value\"}"),
@@ -72,4 +113,26 @@ public class MemoryMonitoringTest {
                         "/gauges/monitor.memory.process.heap/tags",
                         "{\"tag\":\"value\"}"));
     }
+
+    @Test
+    public void shouldReadHeapUsageAtEachFeed() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        Collection<MonitoringSession.Feeder> feeds = MemoryMonitoring.create().feeds(hwk);
+
+        feeds.forEach(MonitoringSession.Feeder::feed);
+        double before = client.getLastGaugeValues().get("monitor.memory.process.heap");
+        client.clear();
+        byte[] allocated = new byte[16 * 1024 * 1024];
+        feeds.forEach(MonitoringSession.Feeder::feed);
+        double after = client.getLastGaugeValues().get("monitor.memory.process.heap");
+
+        assertThat(allocated).hasSize(16 * 1024 * 1024);
+        assertThat(after).isNotEqualTo(before);
+    }
+
+    private static String segment(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
 }
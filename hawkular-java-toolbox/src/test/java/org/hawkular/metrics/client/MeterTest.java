@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.client.model.Meter;
+import org.hawkular.metrics.client.model.Tags;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class MeterTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+
+    @Test
+    public void shouldPublishRates() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .build();
+        Meter meter = hwk.meter("2001.hal.requests");
+        meter.mark(7200);
+        meter.report(3_600_000L);
+
+        Map<String, Double> values = client.getLastGaugeValues();
+        assertThat(values).containsOnlyKeys("2001.hal.requests.count", "2001.hal.requests.rate.1m",
+                "2001.hal.requests.rate.5m", "2001.hal.requests.rate.15m");
+        assertThat(values.get("2001.hal.requests.count")).isEqualTo(7200d);
+        assertThat(values.get("2001.hal.requests.rate.1m")).isEqualTo(2d);
+
+        // Moving averages decay when there's no more event, slower for longer windows
+        meter.report(7_200_000L);
+        values = client.getLastGaugeValues();
+        assertThat(values.get("2001.hal.requests.count")).isEqualTo(0d);
+        assertThat(values.get("2001.hal.requests.rate.15m")).isCloseTo(2 * Math.exp(-4), offset(1e-6));
+        assertThat(values.get("2001.hal.requests.rate.5m")).isLessThan(values.get("2001.hal.requests.rate.15m"));
+        assertThat(values.get("2001.hal.requests.rate.1m")).isLessThan(0.001);
+    }
+
+    @Test
+    public void shouldPublishSlidingWindow() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .build();
+        Meter meter = hwk.meter("2001.hal.requests", Tags.empty(), 3, TimeUnit.HOURS);
+        long[] events = {3600, 7200, 10800, 14400};
+        long[] expectedCounts = {3600, 10800, 21600, 32400};
+        double[] expectedRates = {1, 1.5, 2, 3};
+        for (int i = 0; i < events.length; i++) {
+            meter.mark(events[i]);
+            meter.report((i + 1) * 3_600_000L);
+            Map<String, Double> values = client.getLastGaugeValues();
+            assertThat(values.get("2001.hal.requests.window.count")).isEqualTo((double) expectedCounts[i]);
+            assertThat(values.get("2001.hal.requests.window.rate")).isEqualTo(expectedRates[i]);
+        }
+        assertThat(client.getTagsRestCalls().stream()
+                .filter(tags -> tags.resource.equals("/gauges/2001.hal.requests.window.rate/tags"))
+                .findFirst()
+                .get().body).contains("\"window\":\"10800s\"");
+    }
+
+    @Test
+    public void shouldMarkConcurrently() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .build();
+        Meter meter = hwk.meter("2001.hal.requests");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    meter.mark();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        meter.report(3_600_000L);
+        assertThat(client.getLastGaugeValues().get("2001.hal.requests.count")).isEqualTo(400_000d);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.hawkular.metrics.client.model.Counter;
+import org.hawkular.metrics.client.model.Gauge;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class MetricFamilyTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+
+    @Test
+    public void shouldCreateSameMetricsAsBuilder() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        Counter fromFamily = hwk.counterFamily("svc.read", "impl", "source").labels("mysql", "cache");
+        assertThat(fromFamily.getName()).isEqualTo("svc.read.mysql.cache");
+        assertThat(client.getTagsRestCalls()).hasSize(1);
+        assertThat(client.getTagsRestCalls().get(0).resource).isEqualTo("/counters/svc.read.mysql.cache/tags");
+        assertThat(client.getTagsRestCalls().get(0).body).contains("\"impl\":\"mysql\"")
+                .contains("\"source\":\"cache\"");
+
+        Counter fromBuilder = hwk.metricBuilder()
+                .addSegment("svc.read")
+                .addSegment("impl", "mysql")
+                .addSegment("source", "cache")
+                .toCounter();
+        assertThat(fromBuilder).isSameAs(fromFamily);
+    }
+
+    @Test
+    public void shouldCacheChildren() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        MetricFamily<Gauge> family = hwk.gaugeFamily("2001.heat", "character");
+        Gauge hal = family.labels("hal");
+        assertThat(family.labels("hal")).isSameAs(hal);
+        assertThat(family.labels(new String[] {"hal"})).isSameAs(hal);
+        assertThat(family.labels("dave")).isNotSameAs(hal);
+
+        // Enough children to resize the table several times
+        for (int i = 0; i < 200; i++) {
+            assertThat(family.labels("clone" + i).getName()).isEqualTo("2001.heat.clone" + i);
+        }
+        assertThat(family.labels("hal")).isSameAs(hal);
+        for (int i = 0; i < 200; i++) {
+            assertThat(family.labels("clone" + i)).isSameAs(hwk.gauge("2001.heat.clone" + i));
+        }
+    }
+
+    @Test
+    public void shouldResolveAgainRemovedChildren() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        MetricFamily<Counter> family = hwk.counterFamily("2001.quotes", "character", "mood", "scene");
+        Counter hal = family.labels("hal", "calm", "pod");
+        hwk.remove(hal);
+        Counter halAgain = family.labels("hal", "calm", "pod");
+        assertThat(halAgain).isNotSameAs(hal);
+        assertThat(halAgain.getName()).isEqualTo("2001.quotes.hal.calm.pod");
+        assertThat(family.labels("hal", "calm", "pod")).isSameAs(halAgain);
+    }
+
+    @Test
+    public void shouldDropRemovedChildren() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        MetricFamily<Counter> family = hwk.counterFamily("2001.requests", "session");
+        for (int i = 0; i < 10_000; i++) {
+            // Short-lived label values, removed as an eviction would do
+            assertThat(hwk.remove(family.labels("session-" + i))).isTrue();
+        }
+        assertThat(family.size()).isLessThan(100);
+        assertThat(family.capacity()).isLessThanOrEqualTo(256);
+
+        Counter live = family.labels("session-live");
+        assertThat(family.labels("session-live")).isSameAs(live);
+        assertThat(family.labels("session-0").isDetached()).isFalse();
+    }
+
+    @Test
+    public void shouldRejectWrongLabelsCount() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        MetricFamily<Counter> family = hwk.counterFamily("2001.quotes", "character", "mood");
+        assertThatThrownBy(() -> family.labels("hal"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> family.labels("hal", "calm", "pod"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hawkular.metrics.client.model.Gauge;
+import org.hawkular.metrics.client.monitor.AdaptivePeriod;
+import org.hawkular.metrics.client.monitor.CPUMonitoring;
+import org.hawkular.metrics.client.monitor.GCMonitoring;
+import org.hawkular.metrics.client.monitor.MemoryMonitoring;
+import org.hawkular.metrics.client.monitor.MonitoringSession;
+import org.hawkular.metrics.client.monitor.NotificationMonitoring;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class MonitoringSessionTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+
+    @Test
+    public void shouldSendAlignedBatches() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        MonitoringSession session = hwk.prepareMonitoringSession(100, TimeUnit.MILLISECONDS)
+                .feeds(CPUMonitoring.create())
+                .feeds(MemoryMonitoring.create())
+                .aligned()
+                .parallel()
+                .start();
+
+        Thread.sleep(550);
+        session.stop();
+
+        assertThat(client.getMetricsRestCalls().size()).isBetween(3, 6);
+        for (String call : client.getMetricsRestCalls()) {
+            JSONArray gauges = new JSONObject(call).getJSONArray("gauges");
+            assertThat(gauges.length()).isGreaterThanOrEqualTo(3);
+            Set<Long> timestamps = new HashSet<>();
+            for (int i = 0; i < gauges.length(); i++) {
+                timestamps.add(gauges.getJSONObject(i).getJSONArray("dataPoints").getJSONObject(0)
+                        .getLong("timestamp"));
+            }
+            assertThat(timestamps).hasSize(1);
+            assertThat(timestamps.iterator().next() % 100).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    public void shouldCollectBatchFromSeveralThreads() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        Gauge heat = hwk.gauge("2001.hal.heat");
+        Gauge pressure = hwk.gauge("2001.pod.pressure");
+        MetricsBatch batch = hwk.openBatch(42_000L);
+        Thread thread = new Thread(() -> batch.run(() -> pressure.set(2)));
+        batch.run(() -> heat.set(1));
+        thread.start();
+        thread.join();
+        // Not in the batch
+        heat.set(3);
+        assertThat(client.getMetricsRestCalls()).hasSize(1);
+
+        client.clear();
+        assertThat(batch.flush()).isEqualTo(2);
+        assertThat(client.getMetricsRestCalls()).hasSize(1);
+        JSONArray gauges = new JSONObject(client.getMetricsRestCalls().get(0)).getJSONArray("gauges");
+        assertThat(gauges.length()).isEqualTo(2);
+        assertThat(gauges.getJSONObject(0).getJSONArray("dataPoints").getJSONObject(0).getLong("timestamp"))
+                .isEqualTo(42_000L);
+        assertThat(client.getLastGaugeValues()).containsOnlyKeys("2001.hal.heat", "2001.pod.pressure");
+    }
+
+    @Test
+    public void shouldAdaptPeriod() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        Gauge heat = hwk.gauge("2001.hal.heat");
+        AtomicBoolean alarm = new AtomicBoolean();
+        AtomicBoolean high = new AtomicBoolean();
+        MonitoringSession session = hwk.prepareMonitoringSession(40, TimeUnit.MILLISECONDS)
+                .feed(() -> heat.set(alarm.get() && high.getAndSet(!high.get()) ? 100 : 20))
+                .adaptive(AdaptivePeriod.between(10, 80, TimeUnit.MILLISECONDS).thresholds(50))
+                .start();
+
+        // Stable values: period grows to the max
+        Thread.sleep(600);
+        assertThat(client.getLastGaugeValues()).containsEntry("monitor.session.period", 80d);
+
+        // Crossing the threshold: period snaps to the min
+        alarm.set(true);
+        Thread.sleep(300);
+        session.stop();
+        assertThat(client.getLastGaugeValues()).containsEntry("monitor.session.period", 10d);
+    }
+
+    @Test
+    public void shouldFeedGcNotifications() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        MonitoringSession session = hwk.prepareMonitoringSession(1, TimeUnit.HOURS)
+                .feeds(NotificationMonitoring.create())
+                .start();
+
+        long before = System.currentTimeMillis();
+        System.gc();
+        Thread.sleep(300);
+        session.stop();
+        // Nothing is posted from the JMX notification thread: datapoints wait for the reporter
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+        hwk.stop();
+
+        JSONObject gauge = new JSONObject(client.getMetricsRestCalls().get(0)).getJSONArray("gauges")
+                .getJSONObject(0);
+        assertThat(gauge.getString("id")).startsWith("monitor.gc.").endsWith(".pause");
+        JSONObject dp = gauge.getJSONArray("dataPoints").getJSONObject(0);
+        assertThat(dp.getLong("timestamp")).isGreaterThanOrEqualTo(before - 1000);
+        assertThat(dp.getJSONObject("tags").has("cause")).isTrue();
+        assertThat(client.getTagsRestCalls()).extracting(tags -> tags.resource)
+                .contains("/gauges/" + gauge.getString("id") + "/tags");
+
+        // Unsubscribed
+        client.clear();
+        System.gc();
+        Thread.sleep(300);
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+    }
+
+    @Test
+    public void shouldMonitorGarbageCollections() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(200, TimeUnit.MILLISECONDS)
+                .build();
+        MonitoringSession session = hwk.prepareMonitoringSession(100, TimeUnit.MILLISECONDS)
+                .feeds(GCMonitoring.builder().withTag("app", "hal").build())
+                .start();
+
+        Thread.sleep(150);
+        System.gc();
+        Thread.sleep(600);
+        session.stop();
+        hwk.stop();
+
+        assertThat(client.getLastGaugeValues()).containsKeys("monitor.gc.overhead", "monitor.gc.allocation.rate",
+                "monitor.gc.promotion.rate");
+        assertThat(client.getLastGaugeValues().get("monitor.gc.overhead")).isBetween(0d, 100d);
+        assertThat(client.getLastGaugeValues().keySet().stream()
+                .anyMatch(name -> name.endsWith(".collections.rate"))).isTrue();
+        // The pause of System.gc() was recorded from its notification, and reported by the client's reporter
+        assertThat(client.getLastGaugeValues().entrySet().stream()
+                .filter(e -> e.getKey().startsWith("monitor.gc.") && e.getKey().endsWith(".pause.count"))
+                .mapToDouble(Map.Entry::getValue)
+                .sum()).isGreaterThanOrEqualTo(1d);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hawkular.metrics.client.monitor.MonitoringSession;
+import org.hawkular.metrics.client.monitor.ProfilerMonitoring;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class ProfilerMonitoringTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    @Test
+    public void shouldReportHottestMethods() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        Thread burner = new Thread(this::burn);
+        burner.start();
+        MonitoringSession session = hwk.prepareMonitoringSession(200, TimeUnit.MILLISECONDS)
+                .feeds(ProfilerMonitoring.builder()
+                        .samplingPeriod(5, TimeUnit.MILLISECONDS)
+                        .top(3)
+                        .build())
+                .start();
+
+        Thread.sleep(700);
+        session.stop();
+        running.set(false);
+        burner.join();
+
+        assertThat(counterIds()).contains(
+                "monitor.profiler.samples",
+                "monitor.profiler.method.org.hawkular.metrics.client.ProfilerMonitoringTest.burn");
+        assertThat(client.getLastGaugeValues().get("monitor.profiler.overhead")).isBetween(0d, 100d);
+        assertThat(client.getTagsRestCalls()).contains(new HttpClientMock.TagsData(
+                "/counters/monitor.profiler.method.org.hawkular.metrics.client.ProfilerMonitoringTest.burn/tags",
+                "{\"method\":\"org.hawkular.metrics.client.ProfilerMonitoringTest.burn\"}"));
+    }
+
+    @Test
+    public void shouldCreateFeederAndSamplerTogether() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        ProfilerMonitoring profiler = ProfilerMonitoring.create();
+
+        MonitoringSession.Feeders feeders = profiler.feeders(hwk);
+
+        assertThat(feeders.getFeeds()).hasSize(1);
+        assertThat(feeders.getEventFeeds()).hasSize(1);
+        assertThatThrownBy(() -> profiler.feeds(hwk)).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> profiler.eventFeeds(hwk)).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void shouldReportHottestPackages() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        Thread burner = new Thread(this::burn);
+        burner.start();
+        MonitoringSession session = hwk.prepareMonitoringSession(200, TimeUnit.MILLISECONDS)
+                .feeds(ProfilerMonitoring.builder()
+                        .samplingPeriod(5, TimeUnit.MILLISECONDS)
+                        .byPackage()
+                        .build())
+                .start();
+
+        Thread.sleep(700);
+        session.stop();
+        running.set(false);
+        burner.join();
+
+        assertThat(counterIds()).contains("monitor.profiler.package.org.hawkular.metrics.client");
+    }
+
+    @Test
+    public void shouldCountMethodsBeyondMaxAsOther() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        Thread burner = new Thread(this::burn);
+        Thread otherBurner = new Thread(this::burnOther);
+        burner.start();
+        otherBurner.start();
+        MonitoringSession session = hwk.prepareMonitoringSession(200, TimeUnit.MILLISECONDS)
+                .feeds(ProfilerMonitoring.builder()
+                        .samplingPeriod(5, TimeUnit.MILLISECONDS)
+                        .maxMethods(2)
+                        .build())
+                .start();
+
+        Thread.sleep(700);
+        session.stop();
+        running.set(false);
+        burner.join();
+        otherBurner.join();
+
+        Set<String> methods = new HashSet<>(counterIds());
+        methods.remove("monitor.profiler.samples");
+        assertThat(methods).contains("monitor.profiler.method.other");
+        assertThat(methods.size()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void shouldCapSamplingOverhead() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        Thread burner = new Thread(this::burn);
+        burner.start();
+        // Uncapped, sampling every 100 microseconds would take most of a core
+        MonitoringSession session = hwk.prepareMonitoringSession(500, TimeUnit.MILLISECONDS)
+                .feeds(ProfilerMonitoring.builder()
+                        .samplingPeriod(100, TimeUnit.MICROSECONDS)
+                        .maxOverhead(0.05)
+                        .build())
+                .start();
+
+        Thread.sleep(1800);
+        session.stop();
+        running.set(false);
+        burner.join();
+
+        // In percent
+        assertThat(gaugeValues("monitor.profiler.overhead")).isNotEmpty().allMatch(overhead -> overhead <= 5d);
+    }
+
+    private void burn() {
+        long n = 0;
+        while (running.get()) {
+            n++;
+        }
+    }
+
+    private void burnOther() {
+        long n = 0;
+        while (running.get()) {
+            n--;
+        }
+    }
+
+    private List<Double> gaugeValues(String id) {
+        List<Double> values = new ArrayList<>();
+        for (String call : client.getMetricsRestCalls()) {
+            JSONObject json = new JSONObject(call);
+            if (json.has("gauges")) {
+                JSONArray gauges = json.getJSONArray("gauges");
+                for (int i = 0; i < gauges.length(); i++) {
+                    if (gauges.getJSONObject(i).getString("id").equals(id)) {
+                        JSONArray dataPoints = gauges.getJSONObject(i).getJSONArray("dataPoints");
+                        for (int j = 0; j < dataPoints.length(); j++) {
+                            values.add(dataPoints.getJSONObject(j).getDouble("value"));
+                        }
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private Set<String> counterIds() {
+        Set<String> ids = new HashSet<>();
+        for (String call : client.getMetricsRestCalls()) {
+            JSONObject json = new JSONObject(call);
+            if (json.has("counters")) {
+                JSONArray counters = json.getJSONArray("counters");
+                for (int i = 0; i < counters.length(); i++) {
+                    ids.add(counters.getJSONObject(i).getString("id"));
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.hawkular.metrics.client.monitor.MonitoringSession;
+import org.hawkular.metrics.client.monitor.ThreadMonitoring;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class ThreadMonitoringTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+
+    @Test
+    public void shouldMonitorThreads() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        MonitoringSession session = hwk.prepareMonitoringSession(60, TimeUnit.MILLISECONDS)
+            .feeds(ThreadMonitoring.create())
+            .start();
+
+        Thread.sleep(500);
+        session.stop();
+
+        assertThat(client.getLastGaugeValues()).containsKeys("monitor.threads.live", "monitor.threads.daemon",
+                "monitor.threads.peak", "monitor.threads.state.runnable", "monitor.threads.created.rate");
+        assertThat(client.getLastGaugeValues().get("monitor.threads.live")).isGreaterThan(0d);
+        assertThat(client.getLastGaugeValues().get("monitor.threads.state.runnable")).isGreaterThan(0d);
+        assertThat(lastDeadlockState()).isEqualTo("UP");
+    }
+
+    @Test
+    public void shouldDetectDeadlock() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        ReentrantLock lock1 = new ReentrantLock();
+        ReentrantLock lock2 = new ReentrantLock();
+        CountDownLatch locked = new CountDownLatch(2);
+        Thread t1 = new Thread(() -> lockBoth(lock1, lock2, locked));
+        Thread t2 = new Thread(() -> lockBoth(lock2, lock1, locked));
+        t1.start();
+        t2.start();
+        locked.await();
+
+        MonitoringSession session = hwk.prepareMonitoringSession(60, TimeUnit.MILLISECONDS)
+                .feeds(ThreadMonitoring.builder()
+                        .deadlockDetection(100, TimeUnit.MILLISECONDS)
+                        .build())
+                .start();
+        Thread.sleep(300);
+        session.stop();
+        t1.interrupt();
+        t2.interrupt();
+
+        assertThat(lastDeadlockState()).isEqualTo("DOWN");
+    }
+
+    @Test
+    public void shouldDetectDeadlockInEachSession() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        ThreadMonitoring monitoring = ThreadMonitoring.create();
+        hwk.prepareMonitoringSession(60, TimeUnit.MILLISECONDS)
+                .feeds(monitoring)
+                .run(() -> sleep(200));
+        client.clear();
+
+        // Within the detection period of the first session, but the second one has its own
+        hwk.prepareMonitoringSession(60, TimeUnit.MILLISECONDS)
+                .feeds(monitoring)
+                .run(() -> sleep(200));
+
+        assertThat(lastDeadlockState()).isEqualTo("UP");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String lastDeadlockState() {
+        String state = null;
+        for (String call : client.getMetricsRestCalls()) {
+            JSONObject json = new JSONObject(call);
+            if (json.has("availability")) {
+                JSONArray avails = json.getJSONArray("availability");
+                for (int i = 0; i < avails.length(); i++) {
+                    if (avails.getJSONObject(i).getString("id").equals("monitor.threads.deadlock")) {
+                        state = avails.getJSONObject(i).getJSONArray("dataPoints").getJSONObject(0).getString("value");
+                    }
+                }
+            }
+        }
+        return state;
+    }
+
+    private static void lockBoth(ReentrantLock first, ReentrantLock second, CountDownLatch locked) {
+        first.lock();
+        try {
+            locked.countDown();
+            locked.await();
+            second.lockInterruptibly();
+            second.unlock();
+        } catch (InterruptedException e) {
+            // Released
+        } finally {
+            first.unlock();
+        }
+    }
+
+    @Test
+    public void shouldMonitorThreadsWithBuilder() throws InterruptedException {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .build();
+        MonitoringSession session = hwk.prepareMonitoringSession(60, TimeUnit.MILLISECONDS)
+                .feeds(ThreadMonitoring.builder()
+                    .withTag("tag", "value")
+                    .deadlockDetection(0, TimeUnit.SECONDS)
+                    .build())
+                .start();
+
+        session.stop();
+
+        assertThat(client.getTagsRestCalls()).contains(
+                new HttpClientMock.TagsData(
+                        "/gauges/monitor.threads.live/tags",
+                        "{\"tag\":\"value\"}"),
+                new HttpClientMock.TagsData(
+                        "/gauges/monitor.threads.state.blocked/tags",
+                        "{\"tag\":\"value\",\"state\":\"blocked\"}"));
+        assertThat(client.getTagsRestCalls().stream()
+                .noneMatch(tags -> tags.resource.contains("deadlock"))).isTrue();
+    }
+}
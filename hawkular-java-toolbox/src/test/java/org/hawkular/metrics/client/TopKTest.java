@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.metrics.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.metrics.client.model.Tags;
+import org.hawkular.metrics.client.model.TopK;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * @author Joel Takvorian
+ */
+public class TopKTest {
+
+    private final HttpClientMock client = new HttpClientMock();
+
+    @Test
+    public void shouldPublishHeaviestValues() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .build();
+        TopK errors = hwk.topK("2001.errors", Tags.empty(), 3);
+        // Many light values, and a few heavy ones
+        for (int i = 0; i < 10_000; i++) {
+            errors.offer("tenant-" + i);
+            if (i % 10 == 0) {
+                errors.offer("hal");
+            }
+            if (i % 20 == 0) {
+                errors.offer("dave");
+            }
+            if (i % 40 == 0) {
+                errors.offer("frank", 2);
+            }
+        }
+        errors.report(1000L);
+
+        Map<String, Long> published = publishedCounts();
+        assertThat(published).containsOnlyKeys("hal", "dave", "frank");
+        assertThat(published.get("hal")).isGreaterThanOrEqualTo(1000L);
+        assertThat(published.get("dave")).isGreaterThanOrEqualTo(500L);
+        assertThat(published.get("frank")).isGreaterThanOrEqualTo(500L);
+        assertThat(published.get("hal")).isGreaterThan(published.get("dave"));
+
+        // Nothing new: nothing published
+        client.clear();
+        errors.report(2000L);
+        assertThat(client.getMetricsRestCalls()).isEmpty();
+    }
+
+    @Test
+    public void shouldCountExactlyWhenNotFull() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .build();
+        TopK errors = hwk.topK("2001.errors");
+        errors.offer("hal");
+        errors.offer("hal");
+        errors.offer("dave");
+        errors.report(1000L);
+
+        Map<String, Long> published = publishedCounts();
+        assertThat(published).containsEntry("hal", 2L).containsEntry("dave", 1L).hasSize(2);
+    }
+
+    @Test
+    public void shouldPublishEachValueOnItsOwnCounter() {
+        HawkularClient hwk = HawkularFactory.load().builder()
+                .useHttpClient(uri -> client)
+                .reportInterval(1, TimeUnit.HOURS)
+                .build();
+        TopK errors = hwk.topK("2001.errors", Tags.empty(), 2);
+        errors.offer("hal", 3);
+        errors.offer("dave", 2);
+        errors.offer("frank");
+        errors.report(1000L);
+
+        // Only values that reached the top have a counter, tagged once with the value
+        assertThat(publishedCounts()).containsOnly(entry("hal", 3L), entry("dave", 2L));
+        assertThat(client.getTagsRestCalls()).containsOnly(
+                new HttpClientMock.TagsData("/counters/2001.errors.top.hal/tags", "{\"value\":\"hal\"}"),
+                new HttpClientMock.TagsData("/counters/2001.errors.top.dave/tags", "{\"value\":\"dave\"}"));
+
+        // Frank takes the lead: its counter is created, the others are never retagged
+        client.clear();
+        errors.offer("frank", 5);
+        errors.offer("hal");
+        errors.report(2000L);
+        assertThat(publishedCounts()).containsOnly(entry("frank", 6L), entry("hal", 4L));
+        assertThat(client.getTagsRestCalls()).containsOnly(
+                new HttpClientMock.TagsData("/counters/2001.errors.top.frank/tags", "{\"value\":\"frank\"}"));
+
+        // Counters only send what changed
+        client.clear();
+        errors.offer("frank");
+        errors.report(3000L);
+        assertThat(publishedCounts()).containsOnly(entry("frank", 7L));
+        assertThat(client.getTagsRestCalls()).isEmpty();
+    }
+
+    /**
+     * Last count sent, per value
+     */
+    private Map<String, Long> publishedCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (String call : client.getMetricsRestCalls()) {
+            JSONArray counters = new JSONObject(call).getJSONArray("counters");
+            for (int i = 0; i < counters.length(); i++) {
+                JSONObject counter = counters.getJSONObject(i);
+                assertThat(counter.getString("id")).startsWith("2001.errors.top.");
+                JSONArray dataPoints = counter.getJSONArray("dataPoints");
+                JSONObject dp = dataPoints.getJSONObject(dataPoints.length() - 1);
+                counts.put(counter.getString("id").substring("2001.errors.top.".length()), dp.getLong("value"));
+            }
+        }
+        return counts;
+    }
+}